@@ -0,0 +1,149 @@
+package com.example.chatapp.firebase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.chatapp.utilities.Constants;
+import com.example.chatapp.utilities.ConversationHelper;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented test for {@link ChatMigration}, which needs the Firestore emulator running on
+ * the host machine (firebase emulators:start --only firestore).
+ */
+@RunWith(AndroidJUnit4.class)
+public class ChatMigrationTest {
+
+    private static FirebaseFirestore database;
+    private final InstrumentedFirestore firestore = new InstrumentedFirestore("ChatMigrationTest");
+
+    @BeforeClass
+    public static void useEmulator() {
+        database = FirebaseFirestore.getInstance();
+        database.useEmulator("10.0.2.2", 8080);
+    }
+
+    @Test
+    public void migrate_copiesSentMessagesIntoConversation() throws Exception {
+        String senderId = UUID.randomUUID().toString();
+        String receiverId = UUID.randomUUID().toString();
+        int count = ChatMigration.BATCH_SIZE + 20;
+
+        WriteBatch batch = database.batch();
+        for (int i = 0; i < count; i++) {
+            if (i == ChatMigration.BATCH_SIZE) {
+                Tasks.await(batch.commit());
+                batch = database.batch();
+            }
+            HashMap<String, Object> message = new HashMap<>();
+            message.put(Constants.KEY_SENDER_ID, senderId);
+            message.put(Constants.KEY_RECEIVER_ID, receiverId);
+            message.put(Constants.KEY_MESSAGE, "message " + i);
+            message.put(Constants.KEY_TIMESTAMP, new Date(i));
+            batch.set(database.collection(Constants.KEY_COLLECTION_CHAT).document(), message);
+        }
+        Tasks.await(batch.commit());
+
+        ChatMigration migration = new ChatMigration(database);
+        assertEquals(count, (int) Tasks.await(migration.migrate(firestore, senderId)));
+        // running it again overwrites the same documents
+        assertEquals(count, (int) Tasks.await(migration.migrate(firestore, senderId)));
+
+        QuerySnapshot copies = Tasks.await(database.collection(Constants.KEY_COLLECTION_CONVERSATIONS)
+                .document(ConversationHelper.getConversationId(receiverId, senderId))
+                .collection(Constants.KEY_COLLECTION_MESSAGES)
+                .get());
+        assertEquals(count, copies.size());
+    }
+
+    @Test
+    public void migrate_skipsMessagesWithoutReceiver() throws Exception {
+        String senderId = UUID.randomUUID().toString();
+        String receiverId = UUID.randomUUID().toString();
+
+        // the old user list left the receiver ID unset
+        HashMap<String, Object> legacy = new HashMap<>();
+        legacy.put(Constants.KEY_SENDER_ID, senderId);
+        legacy.put(Constants.KEY_MESSAGE, "lost");
+        legacy.put(Constants.KEY_TIMESTAMP, new Date(0));
+
+        HashMap<String, Object> message = new HashMap<>();
+        message.put(Constants.KEY_SENDER_ID, senderId);
+        message.put(Constants.KEY_RECEIVER_ID, receiverId);
+        message.put(Constants.KEY_MESSAGE, "kept");
+        message.put(Constants.KEY_TIMESTAMP, new Date(1));
+
+        WriteBatch batch = database.batch();
+        batch.set(database.collection(Constants.KEY_COLLECTION_CHAT).document(), legacy);
+        batch.set(database.collection(Constants.KEY_COLLECTION_CHAT).document(), message);
+        Tasks.await(batch.commit());
+
+        assertEquals(1, (int) Tasks.await(new ChatMigration(database).migrate(firestore, senderId)));
+
+        QuerySnapshot copies = Tasks.await(database.collection(Constants.KEY_COLLECTION_CONVERSATIONS)
+                .document(ConversationHelper.getConversationId(senderId, receiverId))
+                .collection(Constants.KEY_COLLECTION_MESSAGES)
+                .get());
+        assertEquals(1, copies.size());
+        assertEquals("kept", copies.getDocuments().get(0).getString(Constants.KEY_MESSAGE));
+    }
+
+    @Test
+    public void migrate_listsNewestMessageInBothUsersConversations() throws Exception {
+        String senderId = UUID.randomUUID().toString();
+        String receiverId = UUID.randomUUID().toString();
+
+        HashMap<String, Object> sender = new HashMap<>();
+        sender.put(Constants.KEY_FIRST_NAME, "Ada");
+        sender.put(Constants.KEY_LAST_NAME, "Lovelace");
+        HashMap<String, Object> receiver = new HashMap<>();
+        receiver.put(Constants.KEY_FIRST_NAME, "Alan");
+        receiver.put(Constants.KEY_LAST_NAME, "Turing");
+
+        WriteBatch batch = database.batch();
+        batch.set(database.collection(Constants.KEY_COLLECTION_USERS).document(senderId), sender);
+        batch.set(database.collection(Constants.KEY_COLLECTION_USERS).document(receiverId), receiver);
+        for (int i = 0; i < 3; i++) {
+            HashMap<String, Object> message = new HashMap<>();
+            message.put(Constants.KEY_SENDER_ID, senderId);
+            message.put(Constants.KEY_RECEIVER_ID, receiverId);
+            message.put(Constants.KEY_MESSAGE, "message " + i);
+            message.put(Constants.KEY_TIMESTAMP, new Date(i));
+            batch.set(database.collection(Constants.KEY_COLLECTION_CHAT).document(), message);
+        }
+        Tasks.await(batch.commit());
+
+        assertEquals(3, (int) Tasks.await(new ChatMigration(database).migrate(firestore, senderId)));
+
+        DocumentSnapshot senderEntry = Tasks.await(database.collection(Constants.KEY_COLLECTION_USERS)
+                .document(senderId)
+                .collection(Constants.KEY_COLLECTION_RECENT_CONVERSATIONS)
+                .document(receiverId)
+                .get());
+        assertEquals("message 2", senderEntry.getString(Constants.KEY_LAST_MESSAGE));
+        assertEquals("Alan", senderEntry.getString(Constants.KEY_FIRST_NAME));
+
+        DocumentSnapshot receiverEntry = Tasks.await(database.collection(Constants.KEY_COLLECTION_USERS)
+                .document(receiverId)
+                .collection(Constants.KEY_COLLECTION_RECENT_CONVERSATIONS)
+                .document(senderId)
+                .get());
+        assertEquals("message 2", receiverEntry.getString(Constants.KEY_LAST_MESSAGE));
+        assertEquals("Ada", receiverEntry.getString(Constants.KEY_FIRST_NAME));
+        // the copied messages were read before the update
+        assertNull(receiverEntry.get(Constants.KEY_UNREAD_COUNT));
+    }
+}
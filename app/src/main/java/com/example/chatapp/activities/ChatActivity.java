@@ -1,29 +1,53 @@
 package com.example.chatapp.activities;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
-import android.util.Base64;
+import android.util.Log;
 import android.view.View;
 import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.chatapp.R;
 import com.example.chatapp.adapters.ChatAdapter;
 import com.example.chatapp.databinding.ActivityChatBinding;
+import com.example.chatapp.firebase.ConversationIndex;
+import com.example.chatapp.firebase.ConversationPrefetcher;
+import com.example.chatapp.firebase.InboxRepository;
+import com.example.chatapp.firebase.InstrumentedFirestore;
 import com.example.chatapp.models.ChatMessage;
+import com.example.chatapp.models.Session;
 import com.example.chatapp.models.User;
+import com.example.chatapp.utilities.ChatNotifications;
 import com.example.chatapp.utilities.Constants;
-import com.example.chatapp.utilities.PreferenceManager;
+import com.example.chatapp.utilities.ConversationHelper;
+import com.example.chatapp.utilities.InboxStreams;
+import com.example.chatapp.utilities.MessageBuckets;
+import com.example.chatapp.utilities.MessageBuffer;
+import com.example.chatapp.utilities.MessageStore;
+import com.example.chatapp.utilities.SessionManager;
+import com.example.chatapp.utilities.SendQueue;
+import com.example.chatapp.utilities.SubscriptionManager;
+import com.example.chatapp.utilities.UserRegistry;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.CollectionReference;
 import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -32,6 +56,12 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * chatting activity class
@@ -41,10 +71,34 @@ public class ChatActivity extends AppCompatActivity {
     private ActivityChatBinding binding;
     private User receiverUser;
 
-    private List<ChatMessage> chatMessages;
+    private MessageBuffer chatMessages;
     private ChatAdapter chatAdapter;
-    private PreferenceManager preferenceManager;
+    private SessionManager sessionManager;
     private FirebaseFirestore database;
+    private String conversationId;
+    private MessageStore messageStore;
+    private final InstrumentedFirestore firestore = new InstrumentedFirestore("ChatActivity");
+
+    // listeners are attached while the screen is visible, from the point up to which the
+    // conversation is known to be complete
+    private final SubscriptionManager subscriptions = new SubscriptionManager();
+    private volatile Date syncedDate;
+    private volatile boolean hasUnreadMessages;
+    private Task<QuerySnapshot> prefetchedCatchUp;
+    private Date prefetchedAt;
+
+    // the message window, paging state and date formatter are only touched on this thread
+    private final ScheduledExecutorService messageExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final SendQueue<ChatMessage> sendQueue = new SendQueue<>(
+            messageExecutor,
+            Constants.MESSAGE_SEND_WINDOW_MILLIS,
+            Constants.MESSAGE_SEND_BATCH_SIZE,
+            this::writeMessages
+    );
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyy - hh:mm a", Locale.getDefault());
+    private boolean isLoadingPage = false;
+    private boolean hasOlderMessages = true;
+    private boolean hasDroppedNewerMessages = false;
 
 
     /**
@@ -57,140 +111,625 @@ public class ChatActivity extends AppCompatActivity {
 
         binding = ActivityChatBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
-        loadReceiverDetails();
+        getLifecycle().addObserver(subscriptions);
+        if (!loadReceiverDetails(savedInstanceState)) {
+            showToast("unable to open chat");
+            finish();
+            return;
+        }
+        // without the count from the conversation list, clear whatever is there once
+        hasUnreadMessages = getIntent().getLongExtra(Constants.KEY_UNREAD_COUNT, -1) != 0;
         setListeners();
         init();
         listenMessage();
     }
 
 
+    /**
+     * Removes this conversation's notification, keeps new ones from showing while it is open
+     * and marks it read
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
+        ChatNotifications.getInstance(getApplicationContext()).setOpenConversation(conversationId);
+        markRead();
+    }
+
+
+    /**
+     * Lets this conversation's notifications show again and marks the messages seen so far read
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+        ChatNotifications.getInstance(getApplicationContext()).setOpenConversation(null);
+        markRead();
+    }
+
+
+    /**
+     * Clears this conversation's unread count in the signed in user's conversation list, if
+     * it was unread when opened or a message arrived since
+     */
+    private void markRead() {
+        if (receiverUser == null || !hasUnreadMessages) {
+            return;
+        }
+
+        hasUnreadMessages = false;
+        new ConversationIndex(FirebaseFirestore.getInstance())
+                .markRead(firestore, SessionManager.getInstance(getApplicationContext()).getSession().userId, receiverUser.id)
+                .addOnFailureListener(e -> Log.w("ChatActivity", "unable to mark conversation read", e));
+    }
+
+
+    /**
+     * Writes any queued messages and shuts down the message thread. The written messages are
+     * stored, or reported as failed, after the screen is gone. The listeners were already
+     * removed when the screen stopped.
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        runInBackground(sendQueue::flush);
+        messageExecutor.shutdown();
+    }
+
+
     /**
      * Initializes variables
      */
     private void init() {
-        preferenceManager = new PreferenceManager(getApplicationContext());
-        chatMessages = new ArrayList<>();
+        sessionManager = SessionManager.getInstance(getApplicationContext());
+        chatMessages = new MessageBuffer();
         chatAdapter = new ChatAdapter(
-                chatMessages,
-                getBitmapFromEncodedString(receiverUser.image),
-                preferenceManager.getString(Constants.KEY_USER_ID)
+                receiverUser,
+                sessionManager.getSession().userId
         );
         binding.chatRecyclerView.setAdapter(chatAdapter);
+        binding.chatRecyclerView.addOnScrollListener(scrollListener);
         database = FirebaseFirestore.getInstance();
+        messageStore = MessageStore.getInstance(getApplicationContext());
+        conversationId = ConversationHelper.getConversationId(
+                sessionManager.getSession().userId,
+                receiverUser.id
+        );
+        // the process may have been restored straight into this screen
+        InboxRepository.getInstance().start(getApplicationContext(), sessionManager.getSession().userId);
     }
 
 
     /**
-     * A method that runs when a message is sent
+     * A method that runs when a message is sent. The message gets its document ID on the
+     * device and is shown right away, then written with any other messages sent in the same
+     * window. The server echo replaces it by ID.
      */
     private void sendMessages() {
-        HashMap<String, Object> message = new HashMap<>();
-
-        message.put(
-                Constants.KEY_SENDER_ID,
-                preferenceManager.getString(Constants.KEY_USER_ID)
-        );
-        message.put(
-                Constants.KEY_RECEIVER_ID,
-                receiverUser.id
-        );
-        message.put(
-                Constants.KEY_MESSAGE,
-                binding.inputMessage.getText().toString()
-        );
-        message.put(
-                Constants.KEY_TIMESTAMP,
+        ChatMessage chatMessage = new ChatMessage(
+                messagesCollection().document().getId(),
+                sessionManager.getSession().userId,
+                receiverUser.id,
+                binding.inputMessage.getText().toString(),
+                null,
                 new Date()
         );
-
-        database.collection(Constants.KEY_COLLECTION_CHAT).add(message);
         binding.inputMessage.setText(null);
+
+        runInBackground(() -> {
+            chatMessages.insert(withReadableDateTime(chatMessage));
+            publishMessages(true);
+        });
+        sendQueue.enqueue(chatMessage);
+    }
+
+
+    /**
+     * Writes a batch of queued messages. Runs on the message thread.
+     * @param pending The messages to write
+     */
+    private void writeMessages(List<ChatMessage> pending) {
+        WriteBatch batch = database.batch();
+        int writes;
+
+        if (Constants.USE_MESSAGE_BUCKETS) {
+            // messages landing in the same hour are appended to their bucket with one write
+            Map<String, List<Object>> entries = new HashMap<>();
+            for (ChatMessage chatMessage : pending) {
+                String bucketId = MessageBuckets.getBucketId(chatMessage.dateObject);
+                if (!entries.containsKey(bucketId)) {
+                    entries.put(bucketId, new ArrayList<>());
+                }
+                entries.get(bucketId).add(MessageBuckets.toEntry(chatMessage));
+            }
+
+            for (Map.Entry<String, List<Object>> bucket : entries.entrySet()) {
+                HashMap<String, Object> update = new HashMap<>();
+                update.put(Constants.KEY_MESSAGES, FieldValue.arrayUnion(bucket.getValue().toArray()));
+                batch.set(bucketsCollection().document(bucket.getKey()), update, SetOptions.merge());
+            }
+            writes = entries.size();
+        } else {
+            for (ChatMessage chatMessage : pending) {
+                HashMap<String, Object> message = new HashMap<>();
+                message.put(Constants.KEY_SENDER_ID, chatMessage.senderId);
+                message.put(Constants.KEY_RECEIVER_ID, chatMessage.receiverId);
+                message.put(Constants.KEY_MESSAGE, chatMessage.message);
+                message.put(Constants.KEY_TIMESTAMP, chatMessage.dateObject);
+
+                batch.set(messagesCollection().document(chatMessage.id), message);
+            }
+            writes = pending.size();
+        }
+
+        // plus the sender's and the receiver's conversation entries
+        new ConversationIndex(database).addMessages(batch, getSender(), receiverUser, pending);
+        writes += 2;
+
+        // the last batch is written as the screen is destroyed, so the store is updated on the
+        // app's inbox thread rather than the message thread
+        Executor storeExecutor = InboxRepository.getInstance().getExecutor();
+        firestore.commit("send messages", batch, writes).addOnSuccessListener(storeExecutor, unused -> {
+            // sent messages don't come back through the inbox, so they are stored once written
+            messageStore.putMessages(conversationId, pending);
+        }).addOnFailureListener(storeExecutor, e -> {
+            for (ChatMessage chatMessage : pending) {
+                messageStore.removeMessage(chatMessage.id);
+            }
+            runInBackground(() -> {
+                for (ChatMessage chatMessage : pending) {
+                    chatMessages.remove(chatMessage.id);
+                }
+                publishMessages(false);
+            });
+        }).addOnFailureListener(e -> showToast("unable to send message"));
+    }
+
+
+    /**
+     * Returns the signed in user as the sender of messages, with the details shown in the
+     * receiver's conversation list
+     * @return The signed in user
+     */
+    private User getSender() {
+        Session session = sessionManager.getSession();
+        User sender = new User();
+        sender.id = session.userId;
+        sender.firstName = session.firstName;
+        sender.lastName = session.lastName;
+        sender.imageHash = session.imageHash;
+        return sender;
     }
 
 
     /**
-     * A method that the app runs while listening for new messages
+     * Shows a toast message
+     * @param message The message to show
+     */
+    private void showToast(String message) {
+        Toast.makeText(getApplicationContext(), message, Toast.LENGTH_SHORT).show();
+    }
+
+
+    /**
+     * Returns the collection holding the messages of this conversation
+     * @return The conversation's message collection
+     */
+    private CollectionReference messagesCollection() {
+        return database.collection(Constants.KEY_COLLECTION_CONVERSATIONS)
+                .document(conversationId)
+                .collection(Constants.KEY_COLLECTION_MESSAGES);
+    }
+
+
+    /**
+     * Returns the collection holding the hourly message buckets of this conversation
+     * @return The conversation's bucket collection
+     */
+    private CollectionReference bucketsCollection() {
+        return database.collection(Constants.KEY_COLLECTION_CONVERSATIONS)
+                .document(conversationId)
+                .collection(Constants.KEY_COLLECTION_BUCKETS);
+    }
+
+
+    /**
+     * A method that the app runs while listening for new messages. The newest stored page is
+     * shown first, taken from the prefetch started when the conversation was picked if there
+     * is one. A conversation that was never synced shows nothing stored, since its stored
+     * messages may have gaps. Messages are then listened to only while the screen is visible,
+     * each time from the sync point: they are caught up with one query, then arrive through
+     * the app's inbox listener, except with buckets, which are listened to here. Older pages
+     * are loaded on scroll. Snapshots are delivered on the message thread.
      */
     private void listenMessage() {
-        database.collection(Constants.KEY_COLLECTION_CHAT)
-                .whereEqualTo(
-                        Constants.KEY_SENDER_ID,
-                        preferenceManager.getString(Constants.KEY_USER_ID)
-                ).whereEqualTo(
-                        Constants.KEY_RECEIVER_ID,
-                        receiverUser.id
-                ).addSnapshotListener(eventListener);
-
-        database.collection(Constants.KEY_COLLECTION_CHAT)
-                .whereEqualTo(
-                        Constants.KEY_SENDER_ID,
-                        receiverUser.id
-                ).whereEqualTo(
-                        Constants.KEY_RECEIVER_ID,
-                        preferenceManager.getString(Constants.KEY_USER_ID)
-                ).addSnapshotListener(eventListener);
+        ConversationPrefetcher.Prefetch prefetch = ConversationPrefetcher.getInstance().take(conversationId);
+
+        runInBackground(() -> {
+            syncedDate = messageStore.getSyncedAt(conversationId);
+            List<ChatMessage> stored = null;
+            if (prefetch != null) {
+                try {
+                    stored = prefetch.getStoredMessages();
+                } catch (ExecutionException | InterruptedException e) {
+                    // read the store again below
+                }
+            }
+            boolean isPrefetched = stored != null;
+            if (!isPrefetched) {
+                stored = syncedDate == null
+                        ? new ArrayList<>()
+                        : messageStore.getLatestMessages(conversationId, Constants.MESSAGE_PAGE_SIZE, date -> null);
+            }
+
+            for (ChatMessage chatMessage : stored) {
+                chatMessages.insert(withReadableDateTime(chatMessage));
+            }
+            if (!stored.isEmpty()) {
+                publishMessages(false);
+            }
+
+            runOnUiThread(() -> {
+                // the prefetched query caught up from the same sync point
+                prefetchedCatchUp = isPrefetched ? prefetch.getCatchUp() : null;
+                prefetchedAt = isPrefetched ? prefetch.getStartDate() : null;
+                subscriptions.add(this::subscribeMessages);
+            });
+        });
+    }
+
+
+    /**
+     * Starts listening for messages newer than the sync point. Runs on the main thread each
+     * time the screen becomes visible.
+     * @return The registration which stops listening
+     */
+    private ListenerRegistration subscribeMessages() {
+        Query query = ConversationPrefetcher.getCatchUpQuery(database, conversationId, syncedDate);
+        if (Constants.USE_MESSAGE_BUCKETS) {
+            return firestore.listen("message buckets", query, this::runInBackground, eventListener);
+        }
+
+        // subscribed before catching up, so nothing sent in between is missed
+        ListenerRegistration registration = InboxRepository.getInstance()
+                .subscribe(conversationId, this::runInBackground, inboxListener);
+        Task<QuerySnapshot> catchUp = prefetchedCatchUp != null ? prefetchedCatchUp : firestore.get("catch up", query);
+        Date catchUpStartDate = prefetchedAt;
+        prefetchedCatchUp = null;
+        prefetchedAt = null;
+        catchUp.addOnCompleteListener(this::runInBackground, task -> {
+            if (!task.isSuccessful()) {
+                runOnUiThread(() -> binding.progressBar.setVisibility(View.GONE));
+                return;
+            }
+
+            eventListener.onEvent(task.getResult(), null);
+            if (catchUpStartDate != null) {
+                // the prefetched query was sent before the inbox subscription, so whatever was
+                // sent since it started is read again
+                Query sincePrefetch = ConversationPrefetcher.getCatchUpQuery(database, conversationId, catchUpStartDate);
+                firestore.get("catch up after prefetch", sincePrefetch)
+                        .addOnSuccessListener(this::runInBackground, value -> eventListener.onEvent(value, null));
+            }
+        });
+        return registration;
     }
 
 
     private final EventListener<QuerySnapshot> eventListener = ((value, error) -> {
         if (error != null) {
+            runOnUiThread(() -> binding.progressBar.setVisibility(View.GONE));
             return;
         }
 
         if (value != null) {
-            int count = chatMessages.size();
+            ChatMessage newest = chatMessages.last();
+            List<ChatMessage> received = new ArrayList<>();
+            boolean inserted = false;
+
             for (DocumentChange documentChange : value.getDocumentChanges()) {
-                if (documentChange.getType() == DocumentChange.Type.ADDED) {
-                    ChatMessage chatMessage = new ChatMessage();
-                    chatMessage.senderId = documentChange.getDocument().getString(Constants.KEY_SENDER_ID);
-                    chatMessage.receiverId = documentChange.getDocument().getString(Constants.KEY_RECEIVER_ID);
-                    chatMessage.message = documentChange.getDocument().getString(Constants.KEY_MESSAGE);
+                DocumentSnapshot document = documentChange.getDocument();
+                switch (documentChange.getType()) {
+                    case ADDED:
+                    case MODIFIED:
+                        for (ChatMessage chatMessage : toChatMessages(document)) {
+                            received.add(chatMessage);
+
+                            // messages past a dropped part of the window come back with the next newer page
+                            if (hasDroppedNewerMessages && newest != null && newest.dateObject.before(chatMessage.dateObject)) {
+                                chatMessages.remove(chatMessage.id);
+                                continue;
+                            }
+                            inserted |= !chatMessages.contains(chatMessage.id);
+                            chatMessages.insert(chatMessage);
+                        }
+                        break;
+                    case REMOVED:
+                        // a bucket only leaves the listener when a newer one pushes it out of the
+                        // page, which doesn't mean its messages were deleted
+                        if (Constants.USE_MESSAGE_BUCKETS) {
+                            continue;
+                        }
+                        chatMessages.remove(document.getId());
+                        messageStore.removeMessage(document.getId());
+                        break;
+                }
+            }
 
-                    chatMessage.datetime = getReadableDateTime(
-                            documentChange.getDocument().getDate(Constants.KEY_TIMESTAMP)
-                    );
+            messageStore.putMessages(conversationId, received);
+            if (!value.getMetadata().isFromCache()) {
+                markSynced(received);
+            }
+            if (chatMessages.trimOldest(Constants.MESSAGE_WINDOW_SIZE) > 0) {
+                hasOlderMessages = true;
+            }
+            publishMessages(inserted);
+        }
+    });
 
-                    chatMessage.dateObject = documentChange.getDocument().getDate(Constants.KEY_TIMESTAMP);
 
-                    chatMessages.add(chatMessage);
-                }
+    /**
+     * Moves the sync point up to the newest message read by the catch-up query or the bucket
+     * listener, which read everything after the previous sync point. Messages from the inbox,
+     * pushes or this device's sends never move it, since messages before them may be missing.
+     * Runs on the message thread.
+     * @param received The messages the query read
+     */
+    private void markSynced(List<ChatMessage> received) {
+        Date newest = syncedDate;
+        for (ChatMessage chatMessage : received) {
+            if (newest == null || chatMessage.dateObject.after(newest)) {
+                newest = chatMessage.dateObject;
             }
+        }
+        if (newest != null && newest != syncedDate) {
+            syncedDate = newest;
+            messageStore.setSyncedAt(conversationId, newest);
+        }
+    }
 
-            Collections.sort(chatMessages, (obj1, obj2) -> obj1.dateObject.compareTo(obj2.dateObject));
 
-            if (count == 0) {
-                chatAdapter.notifyDataSetChanged();
-            } else {
-                chatAdapter.notifyItemRangeChanged(chatMessages.size(), chatMessages.size());
+    private final InboxStreams.Listener inboxListener = ((id, received, removedIds) -> {
+        if (!received.isEmpty()) {
+            // each one added to the unread count
+            hasUnreadMessages = true;
+        }
+        ChatMessage newest = chatMessages.last();
+        boolean inserted = false;
 
-                binding.chatRecyclerView.smoothScrollToPosition(chatMessages.size() - 1);
+        for (ChatMessage chatMessage : received) {
+            // messages past a dropped part of the window come back with the next newer page
+            if (hasDroppedNewerMessages && newest != null && newest.dateObject.before(chatMessage.dateObject)) {
+                continue;
             }
-
-            binding.chatRecyclerView.setVisibility(View.VISIBLE);
+            inserted |= !chatMessages.contains(chatMessage.id);
+            chatMessages.insert(withReadableDateTime(chatMessage));
+        }
+        for (String removedId : removedIds) {
+            chatMessages.remove(removedId);
         }
 
-        binding.progressBar.setVisibility(View.GONE);
+        if (chatMessages.trimOldest(Constants.MESSAGE_WINDOW_SIZE) > 0) {
+            hasOlderMessages = true;
+        }
+        publishMessages(inserted);
     });
 
 
+    private final RecyclerView.OnScrollListener scrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+            int itemCount = chatAdapter.getItemCount();
+            if (layoutManager == null || itemCount == 0) {
+                return;
+            }
+
+            if (dy < 0 && layoutManager.findFirstVisibleItemPosition() <= Constants.MESSAGE_PREFETCH_DISTANCE) {
+                runInBackground(() -> loadOlderMessages());
+            } else if (dy > 0 && layoutManager.findLastVisibleItemPosition()
+                    >= itemCount - 1 - Constants.MESSAGE_PREFETCH_DISTANCE) {
+                runInBackground(() -> loadNewerMessages());
+            }
+        }
+    };
+
+
     /**
-     * Converts an image stored as a String into a Bitmap
-     * @param encodedImage The image stored as a String
-     * @return A Bitmap of the image given as the argument
+     * Loads the page of messages before the oldest message in memory, dropping the newest
+     * messages if the memory window is full. Runs on the message thread.
      */
-    private Bitmap getBitmapFromEncodedString(String encodedImage) {
-        byte[] bytes = Base64.decode(encodedImage, Base64.DEFAULT);
-        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+    private void loadOlderMessages() {
+        if (isLoadingPage || !hasOlderMessages || chatMessages.size() == 0) {
+            return;
+        }
+
+        if (Constants.USE_MESSAGE_BUCKETS) {
+            // the oldest bucket may have been trimmed part way, so it is read again
+            loadPage(
+                    bucketsCollection()
+                            .orderBy(FieldPath.documentId())
+                            .endAt(MessageBuckets.getBucketId(chatMessages.first().dateObject))
+                            .limitToLast(Constants.MESSAGE_BUCKET_PAGE_SIZE),
+                    true
+            );
+        } else {
+            loadPage(
+                    messagesCollection()
+                            .orderBy(Constants.KEY_TIMESTAMP)
+                            .endBefore(chatMessages.first().dateObject)
+                            .limitToLast(Constants.MESSAGE_PAGE_SIZE),
+                    true
+            );
+        }
+    }
+
+
+    /**
+     * Loads the page of messages after the newest message in memory when newer messages were
+     * dropped, dropping the oldest messages if the memory window is full. Runs on the message
+     * thread.
+     */
+    private void loadNewerMessages() {
+        if (isLoadingPage || !hasDroppedNewerMessages || chatMessages.size() == 0) {
+            return;
+        }
+
+        if (Constants.USE_MESSAGE_BUCKETS) {
+            loadPage(
+                    bucketsCollection()
+                            .orderBy(FieldPath.documentId())
+                            .startAt(MessageBuckets.getBucketId(chatMessages.last().dateObject))
+                            .limit(Constants.MESSAGE_BUCKET_PAGE_SIZE),
+                    false
+            );
+        } else {
+            loadPage(
+                    messagesCollection()
+                            .orderBy(Constants.KEY_TIMESTAMP)
+                            .startAfter(chatMessages.last().dateObject)
+                            .limit(Constants.MESSAGE_PAGE_SIZE),
+                    false
+            );
+        }
     }
 
 
     /**
-     * Gets the information about the user being chatted with
+     * Loads one page of the conversation and merges it into the window
+     * @param page The page query
+     * @param older Whether the page is older or newer than the messages in memory
      */
-    private void loadReceiverDetails() {
-        receiverUser = (User)getIntent().getSerializableExtra(Constants.KEY_USER);
+    private void loadPage(Query page, boolean older) {
+        isLoadingPage = true;
+
+        firestore.get(older ? "older page" : "newer page", page).addOnCompleteListener(this::runInBackground, task -> {
+            isLoadingPage = false;
+            if (!task.isSuccessful() || task.getResult() == null) {
+                return;
+            }
+
+            List<DocumentSnapshot> documents = task.getResult().getDocuments();
+            boolean hasMore = documents.size() == (Constants.USE_MESSAGE_BUCKETS
+                    ? Constants.MESSAGE_BUCKET_PAGE_SIZE
+                    : Constants.MESSAGE_PAGE_SIZE);
+            List<ChatMessage> page = new ArrayList<>();
+            for (DocumentSnapshot document : documents) {
+                for (ChatMessage chatMessage : toChatMessages(document)) {
+                    page.add(chatMessage);
+                    chatMessages.insert(chatMessage);
+                }
+            }
+            messageStore.putMessages(conversationId, page);
+
+            if (older) {
+                hasOlderMessages = hasMore;
+                if (chatMessages.trimNewest(Constants.MESSAGE_WINDOW_SIZE) > 0) {
+                    hasDroppedNewerMessages = true;
+                }
+            } else {
+                hasDroppedNewerMessages = hasMore;
+                if (chatMessages.trimOldest(Constants.MESSAGE_WINDOW_SIZE) > 0) {
+                    hasOlderMessages = true;
+                }
+            }
+
+            publishMessages(false);
+        });
+    }
+
+
+    /**
+     * Builds the chat messages held in a document, which is either one message or an hourly
+     * bucket of them. Runs on the message thread.
+     * @param document The message or bucket document
+     * @return The chat messages
+     */
+    private List<ChatMessage> toChatMessages(DocumentSnapshot document) {
+        if (Constants.USE_MESSAGE_BUCKETS) {
+            return MessageBuckets.toChatMessages(document.getData(), this::getReadableDateTime);
+        }
+
+        Date date = document.getDate(Constants.KEY_TIMESTAMP);
+        return Collections.singletonList(new ChatMessage(
+                document.getId(),
+                document.getString(Constants.KEY_SENDER_ID),
+                document.getString(Constants.KEY_RECEIVER_ID),
+                document.getString(Constants.KEY_MESSAGE),
+                getReadableDateTime(date),
+                date
+        ));
+    }
+
+
+    /**
+     * Hands a copy of the message window to the adapter, which works out the changes off the
+     * main thread and only applies the final diff. Runs on the message thread.
+     * @param scrollToNewest Whether to scroll to the newest message once the diff is applied
+     */
+    private void publishMessages(boolean scrollToNewest) {
+        List<ChatMessage> messages = new ArrayList<>(chatMessages.getMessages());
+
+        runOnUiThread(() -> {
+            boolean wasEmpty = chatAdapter.getItemCount() == 0;
+            chatAdapter.submitList(messages, () -> {
+                if (scrollToNewest && !wasEmpty && !messages.isEmpty()) {
+                    binding.chatRecyclerView.smoothScrollToPosition(messages.size() - 1);
+                }
+            });
+            binding.chatRecyclerView.setVisibility(View.VISIBLE);
+            binding.progressBar.setVisibility(View.GONE);
+        });
+    }
+
+
+    /**
+     * Runs a task on the message thread, unless the activity has already been destroyed
+     * @param command The task to run
+     */
+    private void runInBackground(Runnable command) {
+        try {
+            messageExecutor.execute(command);
+        } catch (RejectedExecutionException e) {
+            // the activity is gone, so there is nothing to update
+        }
+    }
+
+
+    /**
+     * Keeps the user being chatted with, for when the process is recreated and the user
+     * registry is empty
+     * @param outState Bundle in which to place the saved state
+     */
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (receiverUser != null) {
+            outState.putParcelable(Constants.KEY_USER, receiverUser);
+        }
+    }
+
+
+    /**
+     * Gets the information about the user being chatted with from the user registry by the ID
+     * in the intent, or from the saved state after the process was recreated
+     * @param savedInstanceState The saved state, or null
+     * @return true if the user was found, otherwise false
+     */
+    private boolean loadReceiverDetails(Bundle savedInstanceState) {
+        receiverUser = UserRegistry.getInstance().get(getIntent().getStringExtra(Constants.KEY_RECEIVER_USER_ID));
+        if (receiverUser == null && savedInstanceState != null) {
+            receiverUser = savedInstanceState.getParcelable(Constants.KEY_USER);
+        }
+        if (receiverUser == null) {
+            return false;
+        }
+
+        UserRegistry.getInstance().put(receiverUser);
         String name = receiverUser.firstName + " " + receiverUser.lastName;
         binding.textName.setText(name);
+        return true;
     }
 
 
@@ -204,14 +743,29 @@ public class ChatActivity extends AppCompatActivity {
 
 
     /**
-     * Returns a String representation of a Date object
+     * Returns a String representation of a Date object. Only called on the message thread,
+     * so the one formatter can be reused.
      * @param date The Date object to make a String representation from
      * @return A String representation of the date argument
      */
     private String getReadableDateTime(Date date) {
-        return new SimpleDateFormat(
-                "MMM dd, yyy - hh:mm a",
-                Locale.getDefault()
-        ).format(date);
+        return dateFormat.format(date);
+    }
+
+
+    /**
+     * Returns a copy of a message with its readable send time. Only called on the message thread.
+     * @param chatMessage The message, which may lack a readable send time
+     * @return The message with its readable send time
+     */
+    private ChatMessage withReadableDateTime(ChatMessage chatMessage) {
+        return new ChatMessage(
+                chatMessage.id,
+                chatMessage.senderId,
+                chatMessage.receiverId,
+                chatMessage.message,
+                getReadableDateTime(chatMessage.dateObject),
+                chatMessage.dateObject
+        );
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,63 @@
+package com.example.chatapp.activities;
+
+import android.os.Bundle;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.example.chatapp.databinding.ActivityDebugMetricsBinding;
+import com.example.chatapp.utilities.FirestoreMetrics;
+
+
+/**
+ * Debug screen which shows the Firestore reads, writes, snapshot events and latencies each
+ * screen has caused since the process started or the counters were reset
+ */
+public class DebugMetricsActivity extends AppCompatActivity {
+
+    private ActivityDebugMetricsBinding binding;
+
+
+    /**
+     * Sets up the binding and the button listeners
+     * @param savedInstanceState Default parameter
+     */
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        binding = ActivityDebugMetricsBinding.inflate(getLayoutInflater());
+        setContentView(binding.getRoot());
+        setListeners();
+    }
+
+
+    /**
+     * Shows the current counters each time the screen comes back
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showMetrics();
+    }
+
+
+    /**
+     * Sets up the click listeners
+     */
+    private void setListeners() {
+        binding.imageBack.setOnClickListener(v -> onBackPressed());
+
+        binding.textReset.setOnClickListener(v -> {
+            FirestoreMetrics.getInstance().reset();
+            showMetrics();
+        });
+    }
+
+
+    /**
+     * Shows the metrics report
+     */
+    private void showMetrics() {
+        binding.textMetrics.setText(FirestoreMetrics.getInstance().dump());
+    }
+}
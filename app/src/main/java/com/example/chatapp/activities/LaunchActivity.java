@@ -0,0 +1,40 @@
+package com.example.chatapp.activities;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.example.chatapp.models.Session;
+import com.example.chatapp.utilities.Constants;
+import com.example.chatapp.utilities.SessionManager;
+
+
+/**
+ * The launcher activity, which has no UI of its own. A signed in user goes straight to the
+ * main screen using the stored session, everyone else goes to sign in.
+ */
+public class LaunchActivity extends AppCompatActivity {
+
+    /**
+     * Routes to the first screen and finishes
+     * @param savedInstanceState Default parameter
+     */
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        Session session = SessionManager.getInstance(getApplicationContext()).getSession();
+        boolean isSignedIn = session.isSignedIn && session.userId != null;
+
+        Intent intent;
+        if (isSignedIn) {
+            intent = new Intent(getApplicationContext(), MainActivity.class);
+            intent.putExtra(Constants.KEY_IS_FAST_START, true);
+        } else {
+            intent = new Intent(getApplicationContext(), SignInActivity.class);
+        }
+        startActivity(intent);
+        finish();
+    }
+}
@@ -1,37 +1,72 @@
 package com.example.chatapp.activities;
 
+import android.Manifest;
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
 import android.os.Bundle;
-import android.util.Base64;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
 import com.example.chatapp.R;
+import com.example.chatapp.adapters.RecentConversationsAdapter;
 import com.example.chatapp.databinding.ActivityMainBinding;
+import com.example.chatapp.firebase.ChatMigration;
+import com.example.chatapp.firebase.ConversationIndex;
+import com.example.chatapp.firebase.ConversationPrefetcher;
+import com.example.chatapp.firebase.InboxRepository;
+import com.example.chatapp.firebase.InstrumentedFirestore;
+import com.example.chatapp.firebase.UserImageMigration;
+import com.example.chatapp.listeners.UserListener;
+import com.example.chatapp.models.RecentConversation;
+import com.example.chatapp.models.Session;
+import com.example.chatapp.models.User;
 import com.example.chatapp.utilities.Constants;
-import com.example.chatapp.utilities.PreferenceManager;
+import com.example.chatapp.utilities.ConversationHelper;
+import com.example.chatapp.utilities.FirestoreMetrics;
+import com.example.chatapp.utilities.ImageLoader;
+import com.example.chatapp.utilities.RecentConversations;
+import com.example.chatapp.utilities.SessionManager;
+import com.example.chatapp.utilities.UserRegistry;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.messaging.FirebaseMessaging;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 
 /**
  * The main class
  */
-public class MainActivity extends AppCompatActivity {
+public class MainActivity extends AppCompatActivity implements UserListener {
 
     private ActivityMainBinding binding;
-    private PreferenceManager preferenceManager;
+    private SessionManager sessionManager;
+    private RecentConversationsAdapter conversationsAdapter;
+    private ListenerRegistration conversationsRegistration;
+    private final InstrumentedFirestore firestore = new InstrumentedFirestore("MainActivity");
+
+    private static boolean isStartupLogged = false;
 
 
     /**
@@ -44,13 +79,44 @@ public class MainActivity extends AppCompatActivity {
 
         binding = ActivityMainBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
-        preferenceManager = new PreferenceManager(getApplicationContext());
+        sessionManager = SessionManager.getInstance(getApplicationContext());
+        conversationsAdapter = new RecentConversationsAdapter(this);
+        binding.conversationsRecyclerView.setAdapter(conversationsAdapter);
         loadUserDetails();
+        logStartupTime();
+        revalidateSession();
+        listenInbox();
         getToken();
+        migrateChat();
+        migrateImage();
+        requestNotificationPermission();
         setListeners();
     }
 
 
+    /**
+     * Starts listening to the recent conversations while the screen is visible
+     */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        listenConversations();
+    }
+
+
+    /**
+     * Stops listening to the recent conversations
+     */
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (conversationsRegistration != null) {
+            conversationsRegistration.remove();
+            conversationsRegistration = null;
+        }
+    }
+
+
     /**
      * Sets up the click listeners
      */
@@ -58,6 +124,30 @@ public class MainActivity extends AppCompatActivity {
         binding.imageSignOut.setOnClickListener(v -> signOut());
 
         binding.fabNewChat.setOnClickListener(v -> startActivity(new Intent(getApplicationContext(), UserActivity.class)));
+
+        // debug builds open the Firestore metrics screen from the profile image
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            binding.imageProfile.setOnLongClickListener(v -> {
+                startActivity(new Intent(getApplicationContext(), DebugMetricsActivity.class));
+                return true;
+            });
+        }
+    }
+
+
+    /**
+     * Adds the Firestore metrics report to this screen's dump. Read with
+     * adb shell dumpsys activity com.example.chatapp
+     * @param prefix Default parameter
+     * @param fd Default parameter
+     * @param writer Where the dump is written
+     * @param args Default parameter
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.println(prefix + "Firestore metrics:");
+        FirestoreMetrics.getInstance().dump(writer);
     }
 
 
@@ -65,12 +155,129 @@ public class MainActivity extends AppCompatActivity {
      * Loads the user's information
      */
     private void loadUserDetails() {
-        binding.textName.setText(preferenceManager.getString(
-                Constants.KEY_FIRST_NAME + " " + Constants.KEY_LAST_NAME
-        ));
-        byte[] bytes = Base64.decode(preferenceManager.getString(Constants.KEY_IMAGE), Base64.DEFAULT);
-        Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-        binding.imageProfile.setImageBitmap(bitmap);
+        Session session = sessionManager.getSession();
+        binding.textName.setText(String.format("%s %s", session.firstName, session.lastName));
+        ImageLoader.getInstance().loadUserImage(session.userId, session.imageHash, binding.imageProfile);
+    }
+
+
+    /**
+     * Listens to the user's recent conversations index, which costs one read per conversation
+     * instead of reading the user directory
+     */
+    private void listenConversations() {
+        conversationsRegistration = new ConversationIndex(FirebaseFirestore.getInstance())
+                .getRecentConversations(sessionManager.getSession().userId)
+                .addSnapshotListener(firestore.track("recent conversations", (value, error) -> {
+                    if (value == null) {
+                        binding.progressBar.setVisibility(View.GONE);
+                        return;
+                    }
+
+                    List<RecentConversation> conversations = new ArrayList<>();
+                    for (DocumentSnapshot document : value.getDocuments()) {
+                        conversations.add(RecentConversations.toRecentConversation(document.getId(), document.getData()));
+                    }
+                    conversationsAdapter.submitList(conversations);
+                    binding.conversationsRecyclerView.setVisibility(View.VISIBLE);
+                    binding.progressBar.setVisibility(View.GONE);
+                }));
+    }
+
+
+    /**
+     * Opens the chat with the other user of a recent conversation
+     * @param user The user that was clicked
+     */
+    @Override
+    public void onUserClicked(User user) {
+        // the conversation starts loading while the chat screen inflates
+        ConversationPrefetcher.getInstance().prefetch(
+                getApplicationContext(),
+                ConversationHelper.getConversationId(sessionManager.getSession().userId, user.id)
+        );
+        Intent intent = new Intent(getApplicationContext(), ChatActivity.class);
+        UserRegistry.getInstance().put(user);
+        intent.putExtra(Constants.KEY_RECEIVER_USER_ID, user.id);
+        for (RecentConversation conversation : conversationsAdapter.getCurrentList()) {
+            if (conversation.user.id.equals(user.id)) {
+                // the chat screen only clears an unread count it knows is there
+                intent.putExtra(Constants.KEY_UNREAD_COUNT, conversation.unreadCount);
+            }
+        }
+        startActivity(intent);
+    }
+
+
+    /**
+     * Logs how long the app took from process start to drawing this screen for the first time,
+     * and whether sign in was skipped, once per process. Read with adb logcat -s Startup.
+     */
+    private void logStartupTime() {
+        if (isStartupLogged) {
+            return;
+        }
+        isStartupLogged = true;
+
+        boolean isFastStart = getIntent().getBooleanExtra(Constants.KEY_IS_FAST_START, false);
+        binding.getRoot().getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                binding.getRoot().getViewTreeObserver().removeOnPreDrawListener(this);
+                long startupMillis = SystemClock.uptimeMillis() - Process.getStartUptimeMillis();
+                Log.i("Startup", "main screen drawn " + startupMillis + "ms after process start, "
+                        + (isFastStart ? "skipping sign in" : "through sign in"));
+                return true;
+            }
+        });
+    }
+
+
+    /**
+     * Checks the stored session against the user document in the background. A deleted user
+     * is signed out, otherwise changed profile details are stored and shown. Network errors
+     * keep the stored session.
+     */
+    private void revalidateSession() {
+        DocumentReference documentReference = FirebaseFirestore.getInstance()
+                .collection(Constants.KEY_COLLECTION_USERS)
+                .document(sessionManager.getSession().userId);
+        firestore.get("session user", documentReference)
+                .addOnSuccessListener(document -> {
+                    if (!document.exists()) {
+                        showSignIn();
+                        return;
+                    }
+
+                    sessionManager.update(session -> {
+                        session.firstName = document.getString(Constants.KEY_FIRST_NAME);
+                        session.lastName = document.getString(Constants.KEY_LAST_NAME);
+                        String imageHash = document.getString(Constants.KEY_IMAGE_HASH);
+                        if (imageHash != null) {
+                            session.imageHash = imageHash;
+                        }
+                    });
+                    loadUserDetails();
+                });
+    }
+
+
+    /**
+     * Starts the app's one listener on messages sent to this user
+     */
+    private void listenInbox() {
+        InboxRepository.getInstance().start(getApplicationContext(), sessionManager.getSession().userId);
+    }
+
+
+    /**
+     * Forgets the stored session and goes back to sign in
+     */
+    private void showSignIn() {
+        InboxRepository.getInstance().stop();
+        sessionManager.clear();
+        startActivity(new Intent(getApplicationContext(), SignInActivity.class));
+        finish();
     }
 
 
@@ -83,6 +290,18 @@ public class MainActivity extends AppCompatActivity {
     }
 
 
+    /**
+     * Asks for permission to show message notifications, which is needed on API 33+
+     */
+    private void requestNotificationPermission() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.POST_NOTIFICATIONS}, 0);
+        }
+    }
+
+
     /**
      * Gets the current token
      */
@@ -92,19 +311,70 @@ public class MainActivity extends AppCompatActivity {
 
 
     /**
-     * Updates the token
+     * Updates the token, unless the user document already has it. Every write moves the user's
+     * update time, which makes every other device download the user again.
      * @param token The token value
      */
     private void updateToken(String token) {
+        if (token.equals(sessionManager.getSession().token)) {
+            return;
+        }
+
         FirebaseFirestore database = FirebaseFirestore.getInstance();
         DocumentReference documentReference = database.collection(Constants.KEY_COLLECTION_USERS)
-                .document(preferenceManager.getString(Constants.KEY_USER_ID));
-        documentReference.update(Constants.KEY_FCM_TOKEN, token)
-                .addOnSuccessListener(unused -> showToast("token updated successfully"))
+                .document(sessionManager.getSession().userId);
+        HashMap<String, Object> updates = new HashMap<>();
+        updates.put(Constants.KEY_FCM_TOKEN, token);
+        updates.put(Constants.KEY_UPDATED_AT, FieldValue.serverTimestamp());
+        firestore.update("token", documentReference, updates)
+                .addOnSuccessListener(unused -> {
+                    sessionManager.update(session -> session.token = token);
+                    showToast("token updated successfully");
+                })
                 .addOnFailureListener(e -> showToast("unable to update token"));
     }
 
 
+    /**
+     * Copies the messages this user sent from the old chat collection into their
+     * conversations, once per install
+     */
+    private void migrateChat() {
+        Session session = sessionManager.getSession();
+        if (session.isChatMigrated) {
+            return;
+        }
+
+        new ChatMigration(FirebaseFirestore.getInstance())
+                .migrate(firestore, session.userId)
+                .addOnSuccessListener(copied -> sessionManager.update(changed -> changed.isChatMigrated = true));
+    }
+
+
+    /**
+     * Moves this user's profile image out of their user document into its own image
+     * document, once per install
+     */
+    private void migrateImage() {
+        Session session = sessionManager.getSession();
+        if (session.isImageMigrated) {
+            return;
+        }
+
+        new UserImageMigration(FirebaseFirestore.getInstance())
+                .migrate(firestore, session.userId)
+                .addOnSuccessListener(imageHash -> {
+                    sessionManager.update(changed -> {
+                        if (imageHash != null) {
+                            changed.imageHash = imageHash;
+                        }
+                        changed.isImageMigrated = true;
+                    });
+                    loadUserDetails();
+                });
+    }
+
+
     /**
      * Signs out the user
      */
@@ -112,15 +382,13 @@ public class MainActivity extends AppCompatActivity {
         showToast("signing out ...");
         FirebaseFirestore database = FirebaseFirestore.getInstance();
         DocumentReference documentReference = database.collection(Constants.KEY_COLLECTION_USERS)
-                .document(preferenceManager.getString(Constants.KEY_USER_ID));
+                .document(sessionManager.getSession().userId);
 
         HashMap<String, Object> updates = new HashMap<>();
         updates.put(Constants.KEY_FCM_TOKEN, FieldValue.delete());
-        documentReference.update(updates)
-                .addOnSuccessListener(unused -> {
-                    preferenceManager.clear();
-                    startActivity(new Intent(getApplicationContext(), SignInActivity.class));
-                    finish();
-                }).addOnFailureListener(e -> showToast("unable to sign out"));
+        updates.put(Constants.KEY_UPDATED_AT, FieldValue.serverTimestamp());
+        firestore.update("sign out", documentReference, updates)
+                .addOnSuccessListener(unused -> showSignIn())
+                .addOnFailureListener(e -> showToast("unable to sign out"));
     }
 }
\ No newline at end of file
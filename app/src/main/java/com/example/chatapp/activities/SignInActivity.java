@@ -15,10 +15,12 @@ import androidx.core.view.WindowInsetsCompat;
 import com.example.chatapp.R;
 import com.example.chatapp.databinding.ActivitySignInBinding;
 import com.example.chatapp.databinding.ActivitySignUpBinding;
+import com.example.chatapp.firebase.InstrumentedFirestore;
 import com.example.chatapp.utilities.Constants;
-import com.example.chatapp.utilities.PreferenceManager;
+import com.example.chatapp.utilities.SessionManager;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
 
 import org.w3c.dom.Document;
 
@@ -31,11 +33,12 @@ import java.util.HashMap;
 public class SignInActivity extends AppCompatActivity {
 
     private ActivitySignInBinding binding;
-    private PreferenceManager preferenceManager;
+    private SessionManager sessionManager;
+    private final InstrumentedFirestore firestore = new InstrumentedFirestore("SignInActivity");
 
 
     /**
-     * Sets up the ActivitySignInBinding and PreferenceManager objects and sets button listeners
+     * Sets up the ActivitySignInBinding and SessionManager objects and sets button listeners
      * @param savedInstanceState Default savedInstanceState argument
      */
     @Override
@@ -44,7 +47,7 @@ public class SignInActivity extends AppCompatActivity {
 
         binding = ActivitySignInBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
-        preferenceManager = new PreferenceManager(getApplicationContext());
+        sessionManager = SessionManager.getInstance(getApplicationContext());
         setListeners();
     }
 
@@ -79,19 +82,22 @@ public class SignInActivity extends AppCompatActivity {
         loading(true);
         FirebaseFirestore database = FirebaseFirestore.getInstance();
 
-        database.collection(Constants.KEY_COLLECTION_USERS)
+        Query query = database.collection(Constants.KEY_COLLECTION_USERS)
                 .whereEqualTo(Constants.KEY_EMAIL, binding.inputEmail.getText().toString())
-                .whereEqualTo(Constants.KEY_PASSWORD, binding.inputPassword.getText().toString())
-                .get()
+                .whereEqualTo(Constants.KEY_PASSWORD, binding.inputPassword.getText().toString());
+        firestore.get("sign in", query)
                 .addOnCompleteListener(task -> {
                     if (task.isSuccessful() && task.getResult() != null && !task.getResult().getDocuments().isEmpty()) {
                         DocumentSnapshot documentSnapshot = task.getResult().getDocuments().get(0);
 
-                        preferenceManager.putBoolean(Constants.KEY_IS_SIGNED_IN, true);
-                        preferenceManager.putString(Constants.KEY_USER_ID, documentSnapshot.getId());
-                        preferenceManager.putString(Constants.KEY_FIRST_NAME, documentSnapshot.getString(Constants.KEY_FIRST_NAME));
-                        preferenceManager.putString(Constants.KEY_LAST_NAME, documentSnapshot.getString(Constants.KEY_LAST_NAME));
-                        preferenceManager.putString(Constants.KEY_IMAGE, documentSnapshot.getString(Constants.KEY_IMAGE));
+                        sessionManager.update(session -> {
+                            session.isSignedIn = true;
+                            session.userId = documentSnapshot.getId();
+                            session.firstName = documentSnapshot.getString(Constants.KEY_FIRST_NAME);
+                            session.lastName = documentSnapshot.getString(Constants.KEY_LAST_NAME);
+                            session.imageHash = documentSnapshot.getString(Constants.KEY_IMAGE_HASH);
+                            session.token = documentSnapshot.getString(Constants.KEY_FCM_TOKEN);
+                        });
 
                         Intent intent = new Intent(getApplicationContext(), MainActivity.class);
                         intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
@@ -2,11 +2,9 @@ package com.example.chatapp.activities;
 
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
-import android.util.Base64;
 import android.util.Patterns;
 import android.view.View;
 import android.widget.Toast;
@@ -21,15 +19,21 @@ import androidx.core.view.WindowInsetsCompat;
 
 import com.example.chatapp.R;
 import com.example.chatapp.databinding.ActivitySignUpBinding;
+import com.example.chatapp.firebase.InstrumentedFirestore;
+import com.example.chatapp.firebase.UserDirectory;
 import com.example.chatapp.utilities.Constants;
-import com.example.chatapp.utilities.PreferenceManager;
+import com.example.chatapp.utilities.ImageLoader;
+import com.example.chatapp.utilities.SessionManager;
+import com.example.chatapp.utilities.ProfileImageEncoder;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 /**
@@ -38,35 +42,34 @@ import java.util.HashMap;
 public class SignUpActivity extends AppCompatActivity {
 
     private ActivitySignUpBinding binding;
-    private PreferenceManager preferenceManager;
+    private SessionManager sessionManager;
+    private final InstrumentedFirestore firestore = new InstrumentedFirestore("SignUpActivity");
 
 
     private String encodeImage;
 
 
+    private final ProfileImageEncoder imageEncoder = new ProfileImageEncoder(
+            Constants.PROFILE_IMAGE_WIDTH,
+            Constants.PROFILE_IMAGE_QUALITY,
+            Constants.PROFILE_IMAGE_MAX_BYTES
+    );
+    private final ExecutorService imageExecutor = Executors.newSingleThreadExecutor();
+
+
     private final ActivityResultLauncher<Intent> pickImage = registerForActivityResult(
             new ActivityResultContracts.StartActivityForResult(),
             result -> {
                 if (result.getResultCode() == RESULT_OK) {
                     Uri imageUri = result.getData().getData();
-                    try {
-                        InputStream inputStream = getContentResolver().openInputStream(imageUri);
-                        Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-
-                        binding.imageProfile.setImageBitmap(bitmap);
-                        binding.textAddImage.setVisibility(View.GONE);
-                        encodeImage = encodeImage(bitmap);
-
-                    } catch (FileNotFoundException e) {
-                        e.printStackTrace();
-                    }
+                    imageExecutor.execute(() -> ingestImage(imageUri));
                 }
             }
     );
 
 
     /**
-     * Sets up the ActivitySignUpBinding and PreferenceManager objects and sets button listeners
+     * Sets up the ActivitySignUpBinding and SessionManager objects and sets button listeners
      * @param savedInstanceState Default savedInstanceState argument
      */
     @Override
@@ -75,11 +78,21 @@ public class SignUpActivity extends AppCompatActivity {
 
         binding = ActivitySignUpBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
-        preferenceManager = new PreferenceManager(getApplicationContext());
+        sessionManager = SessionManager.getInstance(getApplicationContext());
         setListeners();
     }
 
 
+    /**
+     * Stops encoding picked images
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        imageExecutor.shutdownNow();
+    }
+
+
     /**
      * Sets up the button listeners
      */
@@ -116,24 +129,36 @@ public class SignUpActivity extends AppCompatActivity {
         loading(true);
 
         FirebaseFirestore database = FirebaseFirestore.getInstance();
-        HashMap<String, String> user = new HashMap<>();
+        HashMap<String, Object> user = new HashMap<>();
         user.put(Constants.KEY_FIRST_NAME, binding.inputFirstName.getText().toString());
         user.put(Constants.KEY_LAST_NAME, binding.inputLastName.getText().toString());
         user.put(Constants.KEY_EMAIL, binding.inputEmail.getText().toString());
         user.put(Constants.KEY_PASSWORD, binding.inputPassword.getText().toString());
 
-        user.put(Constants.KEY_IMAGE, encodeImage);
+        String imageHash = ImageLoader.hashImage(encodeImage);
+        user.put(Constants.KEY_IMAGE_HASH, imageHash);
+        user.put(Constants.KEY_UPDATED_AT, FieldValue.serverTimestamp());
+
+        // the image lives in its own document so listing users doesn't download it
+        HashMap<String, Object> userImage = new HashMap<>();
+        userImage.put(Constants.KEY_IMAGE, encodeImage);
+
+        DocumentReference userReference = database.collection(Constants.KEY_COLLECTION_USERS).document();
+        HashMap<DocumentReference, Map<String, Object>> otherDocuments = new HashMap<>();
+        otherDocuments.put(database.collection(Constants.KEY_COLLECTION_USER_IMAGES).document(userReference.getId()), userImage);
 
-        database.collection(Constants.KEY_COLLECTION_USERS)
-                .add(user)
-                .addOnSuccessListener(documentReference -> {
+        new UserDirectory(database).createUser(firestore, userReference, user, otherDocuments)
+                .addOnSuccessListener(unused -> {
 
                     loading(false);
 
-                    preferenceManager.putBoolean(Constants.KEY_IS_SIGNED_IN, true);
-                    user.put(Constants.KEY_FIRST_NAME, binding.inputFirstName.getText().toString());
-                    user.put(Constants.KEY_LAST_NAME, binding.inputLastName.getText().toString());
-                    preferenceManager.putString(Constants.KEY_IMAGE, encodeImage);
+                    sessionManager.update(session -> {
+                        session.isSignedIn = true;
+                        session.userId = userReference.getId();
+                        session.firstName = (String) user.get(Constants.KEY_FIRST_NAME);
+                        session.lastName = (String) user.get(Constants.KEY_LAST_NAME);
+                        session.imageHash = imageHash;
+                    });
 
                     Intent intent = new Intent(getApplicationContext(), MainActivity.class);
                     intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
@@ -147,23 +172,27 @@ public class SignUpActivity extends AppCompatActivity {
 
 
     /**
-     * Encodes an image to JPEG format and returns it as a String object
-     * @param bitmap The image to encode.
-     * @return The image as a String object
+     * Decodes a picked image at profile image size and encodes it, on the image thread
+     * @param imageUri The picked image
      */
-    private String encodeImage(Bitmap bitmap) {
-        int previewWidth = 150;
-        int previewHeight = bitmap.getHeight() * previewWidth / bitmap.getWidth();
-
-        Bitmap previewBitmap = Bitmap.createScaledBitmap(bitmap, previewWidth, previewHeight, false);
-
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-
-        previewBitmap.compress(Bitmap.CompressFormat.JPEG, 50, byteArrayOutputStream);
-
-        byte[] bytes = byteArrayOutputStream.toByteArray();
+    private void ingestImage(Uri imageUri) {
+        try {
+            Bitmap bitmap = imageEncoder.decode(() -> getContentResolver().openInputStream(imageUri));
+            if (bitmap == null) {
+                runOnUiThread(() -> showToast("unable to read image"));
+                return;
+            }
 
-        return Base64.encodeToString(bytes, Base64.DEFAULT);
+            String encoded = imageEncoder.encode(bitmap);
+            runOnUiThread(() -> {
+                binding.imageProfile.setImageBitmap(bitmap);
+                binding.textAddImage.setVisibility(View.GONE);
+                encodeImage = encoded;
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            runOnUiThread(() -> showToast("unable to read image"));
+        }
     }
 
 
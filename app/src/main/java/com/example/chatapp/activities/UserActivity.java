@@ -2,27 +2,43 @@ package com.example.chatapp.activities;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.View;
 import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.chatapp.R;
 import com.example.chatapp.adapters.UsersAdapter;
 import com.example.chatapp.databinding.ActivityUserBinding;
+import com.example.chatapp.firebase.ConversationPrefetcher;
+import com.example.chatapp.firebase.InstrumentedFirestore;
+import com.example.chatapp.firebase.UserDirectory;
 import com.example.chatapp.listeners.UserListener;
 import com.example.chatapp.models.User;
 import com.example.chatapp.utilities.Constants;
-import com.example.chatapp.utilities.PreferenceManager;
+import com.example.chatapp.utilities.ConversationHelper;
+import com.example.chatapp.utilities.SessionManager;
+import com.example.chatapp.utilities.UserRegistry;
+import com.example.chatapp.utilities.UserSearchIndex;
+import com.example.chatapp.utilities.UserStore;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.Query;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * User chat selection activity class
@@ -30,7 +46,21 @@ import java.util.List;
 public class UserActivity extends AppCompatActivity implements UserListener {
 
     private ActivityUserBinding binding;
-    private PreferenceManager preferenceManager;
+    private UsersAdapter usersAdapter;
+
+    private UserStore userStore;
+    private String currentUserId;
+
+    private DocumentSnapshot lastUser;
+    private int loadedUserCount = 0;
+    private long syncStartedAt;
+    private boolean isLoadingPage = false;
+    private boolean hasMoreUsers = true;
+
+    private final InstrumentedFirestore firestore = new InstrumentedFirestore("UserActivity");
+    private final UserSearchIndex searchIndex = new UserSearchIndex();
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor();
+    private volatile String searchQuery = "";
 
 
     /**
@@ -42,64 +72,318 @@ public class UserActivity extends AppCompatActivity implements UserListener {
         super.onCreate(savedInstanceState);
 
         binding = ActivityUserBinding.inflate(getLayoutInflater());
-        preferenceManager = new PreferenceManager(getApplicationContext());
         setContentView(binding.getRoot());
+        userStore = UserStore.getInstance(getApplicationContext());
+        currentUserId = SessionManager.getInstance(getApplicationContext()).getSession().userId;
+        usersAdapter = new UsersAdapter(this);
+        binding.usersRecyclerView.setAdapter(usersAdapter);
+        binding.usersRecyclerView.addOnScrollListener(scrollListener);
         setListeners();
         getUsers();
     }
 
 
+    /**
+     * Stops the search thread
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        searchExecutor.shutdownNow();
+    }
+
+
     /**
      * Sets up the click listeners
      */
     private void setListeners() {
         binding.imageBack.setOnClickListener(v -> onBackPressed());
+
+        binding.inputSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchQuery = s.toString();
+                runSearch(() -> filterUsers());
+            }
+        });
     }
 
 
     /**
-     * Loads all the users for selection
+     * Shows the stored directory right away and brings it up to date in the background. Without
+     * a complete stored directory, pages through the users from the start instead.
      */
     private void getUsers() {
-        loading(true);
+        runSearch(() -> {
+            long syncedAt = userStore.getSyncedAt();
+            List<User> storedUsers = syncedAt == 0
+                    ? new ArrayList<>()
+                    : userStore.getUsers(currentUserId);
+            searchIndex.addAll(storedUsers);
+            filterUsers();
+
+            runOnUiThread(() -> {
+                if (syncedAt == 0) {
+                    loading(true);
+                    syncStartedAt = System.currentTimeMillis() - Constants.USER_SYNC_MARGIN_MILLIS;
+                    if (Constants.USE_DIRECTORY_SUMMARIES) {
+                        loadSummaries();
+                    } else {
+                        loadNextPage();
+                    }
+                } else {
+                    hasMoreUsers = false;
+                    if (!storedUsers.isEmpty()) {
+                        binding.usersRecyclerView.setVisibility(View.VISIBLE);
+                    }
+                    revalidateUsers(syncedAt, storedUsers.isEmpty());
+                }
+            });
+        });
+    }
+
 
-        FirebaseFirestore database = FirebaseFirestore.getInstance();
-        database.collection(Constants.KEY_COLLECTION_USERS).get()
+    /**
+     * Downloads only the users changed since the stored directory was last brought up to date,
+     * and applies them to the store and the list
+     * @param syncedAt When the stored directory was last up to date, in milliseconds
+     * @param isEmpty Whether the stored directory has no users to show
+     */
+    private void revalidateUsers(long syncedAt, boolean isEmpty) {
+        Query query = FirebaseFirestore.getInstance()
+                .collection(Constants.KEY_COLLECTION_USERS)
+                .whereGreaterThan(Constants.KEY_UPDATED_AT, new Date(syncedAt));
+        firestore.get("changed users", query)
                 .addOnCompleteListener(task -> {
-                    loading(false);
-                    String currentUserId = preferenceManager.getString(Constants.KEY_USER_ID);
-
-                    if (task.isSuccessful() && task.getResult() != null) {
-                        List<User> users = new ArrayList<>();
-                        for (QueryDocumentSnapshot queryDocumentSnapshot : task.getResult()) {
-                            if (currentUserId.equals(queryDocumentSnapshot.getId())) {
-                                continue;
-                            }
-
-                            User user = new User();
-                            user.firstName = queryDocumentSnapshot.getString(Constants.KEY_FIRST_NAME);
-                            user.lastName = queryDocumentSnapshot.getString(Constants.KEY_LAST_NAME);
-                            user.image = queryDocumentSnapshot.getString(Constants.KEY_IMAGE);
-                            user.email = queryDocumentSnapshot.getString(Constants.KEY_EMAIL);
-                            user.token = queryDocumentSnapshot.getString(Constants.KEY_FCM_TOKEN);
-                            user.id = queryDocumentSnapshot.getString(Constants.KEY_USER_ID);
-                            users.add(user);
+                    if (!task.isSuccessful() || task.getResult() == null) {
+                        if (isEmpty) {
+                            showErrorMessage();
+                        }
+                        return;
+                    }
+
+                    List<User> changedUsers = new ArrayList<>();
+                    long newestUpdate = syncedAt;
+                    for (DocumentSnapshot document : task.getResult().getDocuments()) {
+                        changedUsers.add(toUser(document));
+                        Date updatedAt = document.getDate(Constants.KEY_UPDATED_AT);
+                        if (updatedAt != null) {
+                            newestUpdate = Math.max(newestUpdate, updatedAt.getTime());
                         }
+                    }
 
-                        if (!users.isEmpty()) {
-                            UsersAdapter usersAdapter = new UsersAdapter(users, this);
-                            binding.usersRecyclerView.setAdapter(usersAdapter);
-                            binding.usersRecyclerView.setVisibility(View.VISIBLE);
-                        } else {
+                    if (changedUsers.isEmpty()) {
+                        if (isEmpty) {
                             showErrorMessage();
                         }
-                    } else {
-                        showErrorMessage();
+                        return;
                     }
+
+                    long syncedUntil = newestUpdate;
+                    runSearch(() -> {
+                        userStore.putUsers(changedUsers);
+                        userStore.setSyncedAt(syncedUntil);
+                        // changed users would move to the end of the index, so rebuild it in
+                        // first name order from the store
+                        searchIndex.clear();
+                        searchIndex.addAll(userStore.getUsers(currentUserId));
+                        filterUsers();
+                    });
+                    binding.usersRecyclerView.setVisibility(View.VISIBLE);
                 });
     }
 
 
+    /**
+     * Loads the next page of users ordered by first name, stores it and appends it to the list.
+     * The stored directory is marked up to date once the last page is stored.
+     */
+    private void loadNextPage() {
+        if (isLoadingPage || !hasMoreUsers) {
+            return;
+        }
+        isLoadingPage = true;
+
+        Query query = FirebaseFirestore.getInstance()
+                .collection(Constants.KEY_COLLECTION_USERS)
+                .orderBy(Constants.KEY_FIRST_NAME)
+                .limit(Constants.USER_PAGE_SIZE);
+        if (lastUser != null) {
+            query = query.startAfter(lastUser);
+        }
+
+        firestore.get("users page", query).addOnCompleteListener(task -> {
+            isLoadingPage = false;
+
+            if (!task.isSuccessful() || task.getResult() == null) {
+                loading(false);
+                if (loadedUserCount == 0) {
+                    showErrorMessage();
+                }
+                return;
+            }
+
+            List<DocumentSnapshot> documents = task.getResult().getDocuments();
+            hasMoreUsers = documents.size() == Constants.USER_PAGE_SIZE;
+            if (!documents.isEmpty()) {
+                lastUser = documents.get(documents.size() - 1);
+            }
+
+            List<User> page = new ArrayList<>();
+            for (DocumentSnapshot document : documents) {
+                page.add(toUser(document));
+                if (!currentUserId.equals(document.getId())) {
+                    loadedUserCount++;
+                }
+            }
+
+            boolean isLastPage = !hasMoreUsers;
+            long startedAt = syncStartedAt;
+            runSearch(() -> {
+                userStore.putUsers(page);
+                if (isLastPage) {
+                    userStore.setSyncedAt(startedAt);
+                }
+                addToIndex(page);
+                filterUsers();
+            });
+
+            if (loadedUserCount == 0) {
+                if (hasMoreUsers) {
+                    // the page only held the current user
+                    loadNextPage();
+                } else {
+                    loading(false);
+                    showErrorMessage();
+                }
+                return;
+            }
+
+            loading(false);
+            binding.usersRecyclerView.setVisibility(View.VISIBLE);
+        });
+    }
+
+
+    /**
+     * Loads the whole directory from its few summary documents, stores it and shows it
+     */
+    private void loadSummaries() {
+        hasMoreUsers = false;
+        long startedAt = syncStartedAt;
+
+        new UserDirectory(FirebaseFirestore.getInstance()).getUsers(firestore).addOnCompleteListener(task -> {
+            loading(false);
+            if (!task.isSuccessful() || task.getResult() == null) {
+                showErrorMessage();
+                return;
+            }
+
+            List<User> directory = task.getResult();
+            runSearch(() -> {
+                userStore.putUsers(directory);
+                userStore.setSyncedAt(startedAt);
+                addToIndex(directory);
+                filterUsers();
+            });
+
+            if (directory.size() <= 1) {
+                // at most the current user
+                showErrorMessage();
+            } else {
+                binding.usersRecyclerView.setVisibility(View.VISIBLE);
+            }
+        });
+    }
+
+
+    /**
+     * Reads a user from their user document
+     * @param document The user document
+     * @return The user
+     */
+    private static User toUser(DocumentSnapshot document) {
+        User user = new User();
+        user.firstName = document.getString(Constants.KEY_FIRST_NAME);
+        user.lastName = document.getString(Constants.KEY_LAST_NAME);
+        user.image = document.getString(Constants.KEY_IMAGE);
+        user.imageHash = document.getString(Constants.KEY_IMAGE_HASH);
+        user.email = document.getString(Constants.KEY_EMAIL);
+        user.token = document.getString(Constants.KEY_FCM_TOKEN);
+        user.id = document.getId();
+        return user;
+    }
+
+
+    /**
+     * Adds users other than the signed in user to the search index. Runs on the search thread.
+     * @param users The users
+     */
+    private void addToIndex(List<User> users) {
+        for (User user : users) {
+            if (!currentUserId.equals(user.id)) {
+                searchIndex.add(user);
+            }
+        }
+    }
+
+
+    /**
+     * Runs a task on the search thread, unless the activity is already destroyed. Must be
+     * called on the main thread.
+     * @param task The task
+     */
+    private void runSearch(Runnable task) {
+        if (!searchExecutor.isShutdown()) {
+            searchExecutor.execute(task);
+        }
+    }
+
+
+    /**
+     * Shows the loaded users matching the current search query. Runs on the search thread, and
+     * drops its results if the query changed while it ran.
+     */
+    private void filterUsers() {
+        String query = searchQuery;
+        List<User> results = searchIndex.search(query);
+        runOnUiThread(() -> {
+            if (query.equals(searchQuery)) {
+                // the adapter's diff only touches the rows which changed, and while paging
+                // without a query the list only grows at the end, one range insert per page
+                usersAdapter.submitList(results);
+            }
+        });
+    }
+
+
+    /**
+     * Loads the next page once the list is scrolled close to its end
+     */
+    private final RecyclerView.OnScrollListener scrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            if (dy <= 0 || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+                return;
+            }
+
+            LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+            if (layoutManager.findLastVisibleItemPosition()
+                    >= usersAdapter.getItemCount() - 1 - Constants.USER_PREFETCH_DISTANCE) {
+                loadNextPage();
+            }
+        }
+    };
+
+
     /**
      * Shows an error message
      */
@@ -128,8 +412,14 @@ public class UserActivity extends AppCompatActivity implements UserListener {
      */
     @Override
     public void onUserClicked(User user) {
+        // the conversation starts loading while the chat screen inflates
+        ConversationPrefetcher.getInstance().prefetch(
+                getApplicationContext(),
+                ConversationHelper.getConversationId(currentUserId, user.id)
+        );
         Intent intent = new Intent(getApplicationContext(), ChatActivity.class);
-        intent.putExtra(Constants.KEY_USER, user);
+        UserRegistry.getInstance().put(user);
+        intent.putExtra(Constants.KEY_RECEIVER_USER_ID, user.id);
         startActivity(intent);
         finish();
     }
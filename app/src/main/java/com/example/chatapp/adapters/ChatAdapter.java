@@ -1,6 +1,5 @@
 package com.example.chatapp.adapters;
 
-import android.graphics.Bitmap;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
 
@@ -10,17 +9,15 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.chatapp.databinding.ItemContainerReceivedMessageBinding;
 import com.example.chatapp.databinding.ItemContainerSentMessageBinding;
 import com.example.chatapp.models.ChatMessage;
-
-import java.util.List;
+import com.example.chatapp.models.User;
+import com.example.chatapp.utilities.ImageLoader;
 
 /**
  * chat adapter class
  */
-public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
-
-    private Bitmap receiverProfileImage;
+public class ChatAdapter extends KeyedListAdapter<ChatMessage, RecyclerView.ViewHolder> {
 
-    private final List<ChatMessage> chatMessages;
+    private final User receiverUser;
 
     private final String sendId;
 
@@ -30,13 +27,12 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
     /**
      * Constructor
-     * @param chatMessages The chat messages
-     * @param receiverProfileImage The user's profile image who's being chatted with
+     * @param receiverUser The user who's being chatted with
      * @param sendId The sender's ID
      */
-    public ChatAdapter(List<ChatMessage> chatMessages, Bitmap receiverProfileImage, String sendId) {
-        this.chatMessages = chatMessages;
-        this.receiverProfileImage = receiverProfileImage;
+    public ChatAdapter(User receiverUser, String sendId) {
+        super(chatMessage -> chatMessage.id);
+        this.receiverUser = receiverUser;
         this.sendId = sendId;
     }
 
@@ -71,20 +67,23 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
         if (getItemViewType(position) == VIEW_TYPE_SENT) {
-            ((SentMessageViewHolder)holder).setData(chatMessages.get(position));
+            ((SentMessageViewHolder)holder).setData(getItem(position));
         } else {
-            ((ReceiverMessageViewHolder)holder).setData(chatMessages.get(position), receiverProfileImage);
+            ((ReceiverMessageViewHolder)holder).setData(getItem(position), receiverUser);
         }
     }
 
 
     /**
-     * Returns how many chat messages there are in this chat
-     * @return The number of chat messages in this chat
+     * Cancels the profile image decode of a recycled received message
+     * @param holder The ViewHolder for the view being recycled
      */
     @Override
-    public int getItemCount() {
-        return chatMessages.size();
+    public void onViewRecycled(@NonNull RecyclerView.ViewHolder holder) {
+        super.onViewRecycled(holder);
+        if (holder instanceof ReceiverMessageViewHolder) {
+            ImageLoader.getInstance().cancel(((ReceiverMessageViewHolder)holder).binding.imageProfile);
+        }
     }
 
 
@@ -95,7 +94,7 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
      */
     @Override
     public int getItemViewType(int position) {
-        if (chatMessages.get(position).senderId.equals(sendId)) {
+        if (getItem(position).senderId.equals(sendId)) {
             return VIEW_TYPE_SENT;
         } else {
             return VIEW_TYPE_RECEIVED;
@@ -155,11 +154,12 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         /**
          * Shows the receiving user's info on the message
          * @param chatMessage The message to display the info of
+         * @param receiverUser The user who sent the message
          */
-        void setData(ChatMessage chatMessage, Bitmap receiverProfileImage) {
+        void setData(ChatMessage chatMessage, User receiverUser) {
             binding.textMessage.setText(chatMessage.message);
             binding.textDateTime.setText(chatMessage.datetime);
-            binding.imageProfile.setImageBitmap(receiverProfileImage);
+            ImageLoader.getInstance().load(receiverUser, binding.imageProfile);
         }
     }
 }
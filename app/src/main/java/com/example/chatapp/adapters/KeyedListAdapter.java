@@ -0,0 +1,95 @@
+package com.example.chatapp.adapters;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.function.Function;
+
+/**
+ * Base adapter for items with a unique String key, such as a Firestore document ID. Items get
+ * stable IDs and list updates are diffed on a background thread, so only the rows that really
+ * changed are rebound.
+ * @param <T> The item type, whose equals method tells if a row's contents changed
+ * @param <VH> The view holder type
+ */
+public abstract class KeyedListAdapter<T, VH extends RecyclerView.ViewHolder> extends ListAdapter<T, VH> {
+
+    // 64-bit FNV-1a
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Function<T, String> keyFunction;
+
+
+    /**
+     * Constructor
+     * @param keyFunction Returns the unique key of an item
+     */
+    protected KeyedListAdapter(Function<T, String> keyFunction) {
+        super(new KeyedItemCallback<>(keyFunction));
+        this.keyFunction = keyFunction;
+        setHasStableIds(true);
+    }
+
+
+    /**
+     * Returns the stable ID of the item at a position, a 64-bit hash of its key. Nothing is
+     * remembered per key, so paging through a long list keeps no memory of the items it left.
+     * @param position Adapter position to query
+     * @return The stable ID of the item at the position
+     */
+    @Override
+    public long getItemId(int position) {
+        return hashKey(keyFunction.apply(getItem(position)));
+    }
+
+
+    /**
+     * Hashes a key into a stable ID. Collisions among the few hundred rows of one list are
+     * vanishingly unlikely at 64 bits.
+     * @param key The key
+     * @return The ID
+     */
+    static long hashKey(String key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+
+    /**
+     * Diff callback which matches items by key and compares their contents with equals
+     * @param <T> The item type
+     */
+    private static class KeyedItemCallback<T> extends DiffUtil.ItemCallback<T> {
+
+        private final Function<T, String> keyFunction;
+
+
+        /**
+         * Constructor
+         * @param keyFunction Returns the unique key of an item
+         */
+        KeyedItemCallback(Function<T, String> keyFunction) {
+            this.keyFunction = keyFunction;
+        }
+
+
+        @Override
+        public boolean areItemsTheSame(@NonNull T oldItem, @NonNull T newItem) {
+            return keyFunction.apply(oldItem).equals(keyFunction.apply(newItem));
+        }
+
+
+        @Override
+        public boolean areContentsTheSame(@NonNull T oldItem, @NonNull T newItem) {
+            return oldItem.equals(newItem);
+        }
+    }
+}
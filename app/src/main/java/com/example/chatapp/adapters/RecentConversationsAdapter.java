@@ -0,0 +1,111 @@
+package com.example.chatapp.adapters;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.chatapp.databinding.ItemContainerRecentConversationBinding;
+import com.example.chatapp.listeners.UserListener;
+import com.example.chatapp.models.RecentConversation;
+import com.example.chatapp.utilities.ImageLoader;
+
+/**
+ * Recent conversations adapter class
+ */
+public class RecentConversationsAdapter extends KeyedListAdapter<RecentConversation, RecentConversationsAdapter.ConversationViewHolder> {
+
+    private final UserListener userListener;
+
+
+    /**
+     * Constructor
+     * @param userListener Runs when the other user of a conversation is clicked
+     */
+    public RecentConversationsAdapter(UserListener userListener) {
+        super(conversation -> conversation.user.id);
+        this.userListener = userListener;
+    }
+
+
+    /**
+     * On create method
+     * @param parent The ViewGroup into which the new View will be added after it is bound to
+     *               an adapter position.
+     * @param viewType The view type of the new View.
+     *
+     * @return A new ConversationViewHolder object
+     */
+    @NonNull
+    @Override
+    public ConversationViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        ItemContainerRecentConversationBinding itemContainerRecentConversationBinding = ItemContainerRecentConversationBinding
+                .inflate(LayoutInflater.from(parent.getContext()), parent, false);
+
+        return new ConversationViewHolder(itemContainerRecentConversationBinding);
+    }
+
+
+    /**
+     * On bind method
+     * @param holder The ViewHolder which should be updated to represent the contents of the
+     *        item at the given position in the data set.
+     * @param position The position of the item within the adapter's data set.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull ConversationViewHolder holder, int position) {
+        holder.setConversationData(getItem(position));
+    }
+
+
+    /**
+     * Cancels the image decode of a recycled row
+     * @param holder The ViewHolder for the view being recycled
+     */
+    @Override
+    public void onViewRecycled(@NonNull ConversationViewHolder holder) {
+        super.onViewRecycled(holder);
+        ImageLoader.getInstance().cancel(holder.binding.imageProfile);
+    }
+
+
+    /**
+     * inner conversation view holder class
+     */
+    class ConversationViewHolder extends RecyclerView.ViewHolder {
+
+        ItemContainerRecentConversationBinding binding;
+
+
+        /**
+         * Constructor
+         * @param itemContainerRecentConversationBinding The binding object
+         */
+        public ConversationViewHolder(ItemContainerRecentConversationBinding itemContainerRecentConversationBinding) {
+            super(itemContainerRecentConversationBinding.getRoot());
+            binding = itemContainerRecentConversationBinding;
+        }
+
+
+        /**
+         * Shows the other user and the newest message of a conversation
+         * @param conversation The conversation to display
+         */
+        void setConversationData(RecentConversation conversation) {
+            String fullName = conversation.user.firstName + " " + conversation.user.lastName;
+            binding.textName.setText(fullName);
+            binding.textRecentMessage.setText(conversation.lastMessage);
+            if (conversation.unreadCount > 0) {
+                binding.textUnreadCount.setText(String.valueOf(conversation.unreadCount));
+                binding.textUnreadCount.setVisibility(View.VISIBLE);
+            } else {
+                binding.textUnreadCount.setVisibility(View.GONE);
+            }
+            ImageLoader.getInstance().load(conversation.user, binding.imageProfile);
+
+            binding.getRoot().setOnClickListener(v -> userListener.onUserClicked(conversation.user));
+        }
+    }
+}
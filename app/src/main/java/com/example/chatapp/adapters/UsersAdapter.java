@@ -1,8 +1,5 @@
 package com.example.chatapp.adapters;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.util.Base64;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
 
@@ -12,25 +9,22 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.chatapp.databinding.ItemContainerUserBinding;
 import com.example.chatapp.listeners.UserListener;
 import com.example.chatapp.models.User;
-
-import java.util.List;
+import com.example.chatapp.utilities.ImageLoader;
 
 /**
  * User select adapter class
  */
-public class UsersAdapter extends RecyclerView.Adapter<UsersAdapter.UserViewHolder> {
+public class UsersAdapter extends KeyedListAdapter<User, UsersAdapter.UserViewHolder> {
 
-    private final List<User> users;
     private final UserListener userListener;
 
 
     /**
      * Constructor
-     * @param users The users that can be chatted with
      * @param userListener The UserListener to use
      */
-    public UsersAdapter(List<User> users, UserListener userListener) {
-        this.users = users;
+    public UsersAdapter(UserListener userListener) {
+        super(user -> user.id);
         this.userListener = userListener;
     }
 
@@ -61,17 +55,18 @@ public class UsersAdapter extends RecyclerView.Adapter<UsersAdapter.UserViewHold
      */
     @Override
     public void onBindViewHolder(@NonNull UserViewHolder holder, int position) {
-        holder.setUserData(users.get(position));
+        holder.setUserData(getItem(position));
     }
 
 
     /**
-     * Returns how many users are available to chat with
-     * @return The number of users available to chat with
+     * Cancels the image decode of a recycled row
+     * @param holder The ViewHolder for the view being recycled
      */
     @Override
-    public int getItemCount() {
-        return users.size();
+    public void onViewRecycled(@NonNull UserViewHolder holder) {
+        super.onViewRecycled(holder);
+        ImageLoader.getInstance().cancel(holder.binding.imageProfile);
     }
 
 
@@ -101,21 +96,9 @@ public class UsersAdapter extends RecyclerView.Adapter<UsersAdapter.UserViewHold
             String fullName = user.firstName + " " + user.lastName;
             binding.textName.setText(fullName);
             binding.textEmail.setText(user.email);
-            binding.imageProfile.setImageBitmap(getUserImage(user.image));
+            ImageLoader.getInstance().load(user, binding.imageProfile);
 
             binding.getRoot().setOnClickListener(v -> userListener.onUserClicked(user));
         }
     }
-
-
-    /**
-     * Converts the user's profile image from a String to a Bitmap
-     * @param encodedImage The user's profile image stored as a String
-     * @return A bitmap created from the String storing the user's profile image
-     */
-    private Bitmap getUserImage(String encodedImage) {
-        byte[] bytes = Base64.decode(encodedImage, Base64.DEFAULT);
-        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-    }
-
 }
@@ -0,0 +1,192 @@
+package com.example.chatapp.firebase;
+
+import com.example.chatapp.models.ChatMessage;
+import com.example.chatapp.models.User;
+import com.example.chatapp.utilities.Constants;
+import com.example.chatapp.utilities.ConversationHelper;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One-shot migration which copies messages from the global chat collection into the
+ * conversations/{conversationId}/messages subcollections, and lists the conversations in both
+ * users' recent conversations. Each user copies the messages they sent the first time they
+ * open the app after the update.
+ */
+public class ChatMigration {
+
+    // Firestore allows at most 500 writes in one batch
+    public static final int BATCH_SIZE = 500;
+
+    private final FirebaseFirestore database;
+
+
+    /**
+     * Constructor
+     * @param database The database to migrate, which can be pointed at the emulator
+     */
+    public ChatMigration(FirebaseFirestore database) {
+        this.database = database;
+    }
+
+
+    /**
+     * Copies the messages sent by one user, then writes the recent conversation entries for
+     * the newest copied message of each conversation. Copies keep their document IDs, so
+     * running the migration again overwrites the same documents instead of duplicating them.
+     * Messages written without a sender or receiver ID belong to no conversation and are
+     * skipped.
+     * @param firestore The layer which records the reads and writes
+     * @param senderId The ID of the user whose sent messages are copied
+     * @return A task with the number of copied messages
+     */
+    public Task<Integer> migrate(InstrumentedFirestore firestore, String senderId) {
+        Query query = database.collection(Constants.KEY_COLLECTION_CHAT)
+                .whereEqualTo(Constants.KEY_SENDER_ID, senderId);
+        return migratePage(firestore, senderId, query.orderBy(FieldPath.documentId()).limit(BATCH_SIZE), null, 0, new HashMap<>());
+    }
+
+
+    /**
+     * Copies one page of messages in a single batched write, then moves on to the next page.
+     * After the last page, indexes the conversations.
+     * @param firestore The layer which records the reads and writes
+     * @param senderId The ID of the user whose sent messages are copied
+     * @param query The ordered page query
+     * @param last The last document of the previous page, or null for the first page
+     * @param copied How many messages were copied so far
+     * @param latest The newest message copied so far, by receiver ID
+     * @return A task with the number of copied messages
+     */
+    private Task<Integer> migratePage(InstrumentedFirestore firestore, String senderId, Query query, DocumentSnapshot last, int copied,
+                                      Map<String, ChatMessage> latest) {
+        Query page = last == null ? query : query.startAfter(last);
+
+        return firestore.get("chat migration page", page).continueWithTask(task -> {
+            if (!task.isSuccessful()) {
+                return Tasks.forException(task.getException());
+            }
+
+            List<DocumentSnapshot> documents = task.getResult().getDocuments();
+            if (documents.isEmpty()) {
+                return indexConversations(firestore, senderId, latest).onSuccessTask(unused -> Tasks.forResult(copied));
+            }
+
+            WriteBatch batch = database.batch();
+            int count = 0;
+            for (DocumentSnapshot document : documents) {
+                String messageSenderId = document.getString(Constants.KEY_SENDER_ID);
+                String messageReceiverId = document.getString(Constants.KEY_RECEIVER_ID);
+                if (messageSenderId == null || messageReceiverId == null) {
+                    continue;
+                }
+
+                String conversationId = ConversationHelper.getConversationId(messageSenderId, messageReceiverId);
+                batch.set(
+                        database.collection(Constants.KEY_COLLECTION_CONVERSATIONS)
+                                .document(conversationId)
+                                .collection(Constants.KEY_COLLECTION_MESSAGES)
+                                .document(document.getId()),
+                        document.getData()
+                );
+                count++;
+
+                // pages are ordered by ID, so the newest message can be on any of them
+                Date date = document.getDate(Constants.KEY_TIMESTAMP);
+                ChatMessage newest = latest.get(messageReceiverId);
+                if (date != null && (newest == null || newest.dateObject.before(date))) {
+                    latest.put(messageReceiverId, new ChatMessage(document.getId(), messageSenderId,
+                            messageReceiverId, document.getString(Constants.KEY_MESSAGE), null, date));
+                }
+            }
+
+            int total = copied + count;
+            return firestore.commit("chat migration", batch, count).continueWithTask(commit -> {
+                if (!commit.isSuccessful()) {
+                    return Tasks.forException(commit.getException());
+                }
+                if (documents.size() < BATCH_SIZE) {
+                    return indexConversations(firestore, senderId, latest).onSuccessTask(unused -> Tasks.forResult(total));
+                }
+                return migratePage(firestore, senderId, query, documents.get(documents.size() - 1), total, latest);
+            });
+        });
+    }
+
+
+    /**
+     * Writes the recent conversation entries of both users for each copied conversation.
+     * Reads the users first, for the names and image hashes the entries show, and skips
+     * conversations with a user who no longer exists.
+     * @param firestore The layer which records the reads and writes
+     * @param senderId The ID of the user whose sent messages were copied
+     * @param latest The newest copied message, by receiver ID
+     * @return A task which completes once every entry is written
+     */
+    private Task<Void> indexConversations(InstrumentedFirestore firestore, String senderId, Map<String, ChatMessage> latest) {
+        if (latest.isEmpty()) {
+            return Tasks.forResult(null);
+        }
+
+        List<String> userIds = new ArrayList<>(latest.keySet());
+        userIds.add(senderId);
+        List<Task<DocumentSnapshot>> reads = new ArrayList<>();
+        for (String userId : userIds) {
+            reads.add(firestore.get("migrated user", database.collection(Constants.KEY_COLLECTION_USERS).document(userId)));
+        }
+
+        return Tasks.whenAllSuccess(reads).continueWithTask(task -> {
+            if (!task.isSuccessful()) {
+                return Tasks.forException(task.getException());
+            }
+
+            Map<String, User> users = new HashMap<>();
+            for (Object result : task.getResult()) {
+                DocumentSnapshot document = (DocumentSnapshot) result;
+                if (document.exists()) {
+                    users.put(document.getId(), toUser(document));
+                }
+            }
+            User sender = users.get(senderId);
+            if (sender == null) {
+                return Tasks.forResult(null);
+            }
+
+            ConversationIndex conversationIndex = new ConversationIndex(database);
+            List<Task<Integer>> writes = new ArrayList<>();
+            for (Map.Entry<String, ChatMessage> conversation : latest.entrySet()) {
+                User receiver = users.get(conversation.getKey());
+                if (receiver != null) {
+                    writes.add(conversationIndex.addMigratedMessage(firestore, sender, receiver, conversation.getValue()));
+                }
+            }
+            return Tasks.whenAll(writes);
+        });
+    }
+
+
+    /**
+     * Reads the details a recent conversation entry shows from a user document
+     * @param document The user document
+     * @return The user
+     */
+    private static User toUser(DocumentSnapshot document) {
+        User user = new User();
+        user.id = document.getId();
+        user.firstName = document.getString(Constants.KEY_FIRST_NAME);
+        user.lastName = document.getString(Constants.KEY_LAST_NAME);
+        user.imageHash = document.getString(Constants.KEY_IMAGE_HASH);
+        return user;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.chatapp.firebase;
+
+import com.example.chatapp.models.ChatMessage;
+import com.example.chatapp.models.User;
+import com.example.chatapp.utilities.Constants;
+import com.example.chatapp.utilities.RecentConversations;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps each user's recent conversations index in step with the messages sent. Every batch of
+ * sent messages also updates the sender's and the receiver's entry, so both users' home
+ * screens cost one read per active conversation.
+ */
+public class ConversationIndex {
+
+    private final FirebaseFirestore database;
+
+
+    /**
+     * Constructor
+     * @param database The database, which can be pointed at the emulator
+     */
+    public ConversationIndex(FirebaseFirestore database) {
+        this.database = database;
+    }
+
+
+    /**
+     * Adds the index updates for a batch of sent messages to the batch which writes them.
+     * Takes two writes whatever the number of messages.
+     * @param batch The batch which writes the messages
+     * @param sender The user who sent the messages
+     * @param receiver The user the messages were sent to
+     * @param chatMessages The sent messages, oldest first
+     */
+    public void addMessages(WriteBatch batch, User sender, User receiver, List<ChatMessage> chatMessages) {
+        ChatMessage lastMessage = chatMessages.get(chatMessages.size() - 1);
+
+        Map<String, Object> senderEntry = RecentConversations.toEntry(receiver, lastMessage);
+        senderEntry.put(Constants.KEY_UNREAD_COUNT, 0);
+        batch.set(getEntries(sender.id).document(receiver.id), senderEntry, SetOptions.merge());
+
+        Map<String, Object> receiverEntry = RecentConversations.toEntry(sender, lastMessage);
+        receiverEntry.put(Constants.KEY_UNREAD_COUNT, FieldValue.increment(chatMessages.size()));
+        batch.set(getEntries(receiver.id).document(sender.id), receiverEntry, SetOptions.merge());
+    }
+
+
+    /**
+     * Writes the index entries for a conversation copied from the old chat collection, unless
+     * a newer message was already sent in it. The copied messages were seen before, so the
+     * unread counts are left alone.
+     * @param firestore The layer which records the transaction
+     * @param sender The user who sent the copied messages
+     * @param receiver The user the copied messages were sent to
+     * @param lastMessage The newest copied message
+     * @return A task with the number of written entries
+     */
+    public Task<Integer> addMigratedMessage(InstrumentedFirestore firestore, User sender, User receiver, ChatMessage lastMessage) {
+        DocumentReference senderEntry = getEntries(sender.id).document(receiver.id);
+        DocumentReference receiverEntry = getEntries(receiver.id).document(sender.id);
+
+        return firestore.runTransaction("migrated conversation", database, transaction -> {
+            boolean isSenderEntryOlder = isOlder(transaction.get(senderEntry), lastMessage);
+            boolean isReceiverEntryOlder = isOlder(transaction.get(receiverEntry), lastMessage);
+            int written = 0;
+            if (isSenderEntryOlder) {
+                transaction.set(senderEntry, RecentConversations.toEntry(receiver, lastMessage), SetOptions.merge());
+                written++;
+            }
+            if (isReceiverEntryOlder) {
+                transaction.set(receiverEntry, RecentConversations.toEntry(sender, lastMessage), SetOptions.merge());
+                written++;
+            }
+            return written;
+        }, 2, written -> written);
+    }
+
+
+    /**
+     * Clears the unread count of a conversation once its user has seen it. Fails for a
+     * conversation without an entry yet.
+     * @param firestore The layer which records the write
+     * @param userId The ID of the user who saw the conversation
+     * @param otherUserId The ID of the other user in the conversation
+     * @return The write's task
+     */
+    public Task<Void> markRead(InstrumentedFirestore firestore, String userId, String otherUserId) {
+        Map<String, Object> update = new HashMap<>();
+        update.put(Constants.KEY_UNREAD_COUNT, 0);
+        return firestore.update("mark read", getEntries(userId).document(otherUserId), update);
+    }
+
+
+    /**
+     * Returns the query for a user's most recent conversations, newest first
+     * @param userId The user's ID
+     * @return The query
+     */
+    public Query getRecentConversations(String userId) {
+        return getEntries(userId)
+                .orderBy(Constants.KEY_TIMESTAMP, Query.Direction.DESCENDING)
+                .limit(Constants.RECENT_CONVERSATION_LIMIT);
+    }
+
+
+    /**
+     * Checks whether an index entry is missing or older than a message
+     * @param entry The entry document
+     * @param chatMessage The message
+     * @return true if the message is newer than the entry, otherwise false
+     */
+    private static boolean isOlder(DocumentSnapshot entry, ChatMessage chatMessage) {
+        Date date = entry.getDate(Constants.KEY_TIMESTAMP);
+        return date == null || date.before(chatMessage.dateObject);
+    }
+
+
+    /**
+     * Returns the collection holding a user's index entries
+     * @param userId The user's ID
+     * @return The entry collection
+     */
+    private CollectionReference getEntries(String userId) {
+        return database.collection(Constants.KEY_COLLECTION_USERS)
+                .document(userId)
+                .collection(Constants.KEY_COLLECTION_RECENT_CONVERSATIONS);
+    }
+}
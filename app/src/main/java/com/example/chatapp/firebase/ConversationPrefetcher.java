@@ -0,0 +1,201 @@
+package com.example.chatapp.firebase;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import com.example.chatapp.models.ChatMessage;
+import com.example.chatapp.utilities.Constants;
+import com.example.chatapp.utilities.MessageBuckets;
+import com.example.chatapp.utilities.MessageStore;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Starts loading a conversation when its row is pressed, so the stored page and the catch-up
+ * query are already under way while the chat screen inflates. The chat screen takes the
+ * prefetch once, and a prefetch nobody took in time is ignored and dropped by the next one.
+ */
+public class ConversationPrefetcher {
+
+    /**
+     * A conversation's prefetched stored page and catch-up query
+     */
+    public static class Prefetch {
+        private final Future<List<ChatMessage>> storedMessages;
+        private final Task<QuerySnapshot> catchUp;
+        private final Date startDate;
+
+
+        /**
+         * Constructor
+         * @param storedMessages The read of the newest stored page
+         * @param catchUp The catch-up query from the conversation's sync point
+         * @param startDate When the prefetch started, before the catch-up query was sent
+         */
+        Prefetch(Future<List<ChatMessage>> storedMessages, Task<QuerySnapshot> catchUp, Date startDate) {
+            this.storedMessages = storedMessages;
+            this.catchUp = catchUp;
+            this.startDate = startDate;
+        }
+
+
+        /**
+         * Waits for the newest stored page. Shouldn't be called on the main thread.
+         * @return The stored messages without readable send times, oldest first
+         * @throws ExecutionException If the stored page couldn't be read
+         * @throws InterruptedException If the wait was interrupted
+         */
+        public List<ChatMessage> getStoredMessages() throws ExecutionException, InterruptedException {
+            return storedMessages.get();
+        }
+
+
+        /**
+         * Returns the catch-up query, started from the conversation's sync point
+         * @return The query's task
+         */
+        public Task<QuerySnapshot> getCatchUp() {
+            return catchUp;
+        }
+
+
+        /**
+         * Returns when the prefetch started. Messages sent after it may be missing from the
+         * catch-up query.
+         * @return The start time
+         */
+        public Date getStartDate() {
+            return startDate;
+        }
+    }
+
+
+    private static final long MAX_AGE_MILLIS = 10_000;
+
+    private static ConversationPrefetcher instance;
+
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor();
+    private final Map<String, Prefetch> prefetches = new HashMap<>();
+    private final Map<String, Long> startTimes = new HashMap<>();
+
+
+    /**
+     * Returns the app's prefetcher
+     * @return The prefetcher
+     */
+    public static synchronized ConversationPrefetcher getInstance() {
+        if (instance == null) {
+            instance = new ConversationPrefetcher();
+        }
+        return instance;
+    }
+
+
+    /**
+     * Returns the query which catches a conversation up from its sync point, less the sync
+     * margin for messages whose send time came from a clock running slightly behind. The
+     * messages read again are replaced by ID. Without a sync point it is the newest page of
+     * the conversation.
+     * @param database The database
+     * @param conversationId The conversation
+     * @param syncedAt The conversation's sync point, or null
+     * @return The query
+     */
+    public static Query getCatchUpQuery(FirebaseFirestore database, String conversationId, Date syncedAt) {
+        Date since = syncedAt == null
+                ? null
+                : new Date(syncedAt.getTime() - Constants.MESSAGE_SYNC_MARGIN_MILLIS);
+        if (Constants.USE_MESSAGE_BUCKETS) {
+            Query query = database.collection(Constants.KEY_COLLECTION_CONVERSATIONS)
+                    .document(conversationId)
+                    .collection(Constants.KEY_COLLECTION_BUCKETS)
+                    .orderBy(FieldPath.documentId());
+            return since == null
+                    ? query.limitToLast(Constants.MESSAGE_BUCKET_PAGE_SIZE)
+                    : query.startAt(MessageBuckets.getBucketId(since));
+        }
+
+        Query query = database.collection(Constants.KEY_COLLECTION_CONVERSATIONS)
+                .document(conversationId)
+                .collection(Constants.KEY_COLLECTION_MESSAGES)
+                .orderBy(Constants.KEY_TIMESTAMP);
+        return since == null
+                ? query.limitToLast(Constants.MESSAGE_PAGE_SIZE)
+                : query.whereGreaterThan(Constants.KEY_TIMESTAMP, since);
+    }
+
+
+    /**
+     * Starts reading a conversation's newest stored page, then its catch-up query. A
+     * conversation that was never synced has no trustworthy stored page. Prefetches nobody took
+     * in time are dropped.
+     * @param context Any context, used to open the message store
+     * @param conversationId The conversation
+     */
+    public void prefetch(Context context, String conversationId) {
+        MessageStore messageStore = MessageStore.getInstance(context);
+        Date startDate = new Date();
+        TaskCompletionSource<QuerySnapshot> catchUp = new TaskCompletionSource<>();
+
+        Future<List<ChatMessage>> storedMessages = prefetchExecutor.submit(() -> {
+            Date since = messageStore.getSyncedAt(conversationId);
+            List<ChatMessage> stored = since == null
+                    ? new ArrayList<>()
+                    : messageStore.getLatestMessages(conversationId, Constants.MESSAGE_PAGE_SIZE, date -> null);
+            new InstrumentedFirestore("Prefetch")
+                    .get("catch up", getCatchUpQuery(FirebaseFirestore.getInstance(), conversationId, since))
+                    .addOnCompleteListener(prefetchExecutor, task -> {
+                        if (task.isSuccessful()) {
+                            catchUp.setResult(task.getResult());
+                        } else {
+                            catchUp.setException(task.getException());
+                        }
+                    });
+            return stored;
+        });
+
+        synchronized (this) {
+            long now = SystemClock.elapsedRealtime();
+            Iterator<Map.Entry<String, Long>> iterator = startTimes.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Long> entry = iterator.next();
+                if (now - entry.getValue() > MAX_AGE_MILLIS) {
+                    prefetches.remove(entry.getKey());
+                    iterator.remove();
+                }
+            }
+            prefetches.put(conversationId, new Prefetch(storedMessages, catchUp.getTask(), startDate));
+            startTimes.put(conversationId, now);
+        }
+    }
+
+
+    /**
+     * Takes a conversation's prefetch, if one was started recently
+     * @param conversationId The conversation
+     * @return The prefetch, or null
+     */
+    public synchronized Prefetch take(String conversationId) {
+        Prefetch prefetch = prefetches.remove(conversationId);
+        Long startTime = startTimes.remove(conversationId);
+        if (prefetch == null || SystemClock.elapsedRealtime() - startTime > MAX_AGE_MILLIS) {
+            return null;
+        }
+        return prefetch;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.chatapp.firebase;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.chatapp.models.ChatMessage;
+import com.example.chatapp.utilities.Constants;
+import com.example.chatapp.utilities.ConversationHelper;
+import com.example.chatapp.utilities.InboxStreams;
+import com.example.chatapp.utilities.MessageStore;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Owns the app's one listener on messages sent to the signed in user, across every
+ * conversation. Changes are saved to the message store and routed to the screens subscribed
+ * to their conversation, so opening more chats never opens more Firestore listeners. The
+ * inbox only sees received messages, so it never moves a conversation's sync point.
+ * Needs a collection group index on messages over receiverId and timestamp.
+ */
+public class InboxRepository {
+
+    private static InboxRepository instance;
+
+    private final ExecutorService inboxExecutor = Executors.newSingleThreadExecutor();
+    private final InboxStreams streams = new InboxStreams();
+    private ListenerRegistration registration;
+    private int generation = 0;
+    private String userId;
+    private MessageStore messageStore;
+
+
+    /**
+     * Returns the app's inbox
+     * @return The inbox repository
+     */
+    public static synchronized InboxRepository getInstance() {
+        if (instance == null) {
+            instance = new InboxRepository();
+        }
+        return instance;
+    }
+
+
+    /**
+     * Starts listening for messages sent to a user, unless already listening for them. Messages
+     * from before the start are read by the screens themselves.
+     * @param context Any context, used to open the message store
+     * @param userId The signed in user's ID
+     */
+    public synchronized void start(Context context, String userId) {
+        if (registration != null && userId.equals(this.userId)) {
+            return;
+        }
+        stop();
+
+        this.userId = userId;
+        messageStore = MessageStore.getInstance(context);
+        listen();
+    }
+
+
+    /**
+     * Attaches the listener for the current user. Messages from before it attached are read
+     * by the screens' catch-up queries.
+     */
+    private synchronized void listen() {
+        int listenGeneration = ++generation;
+        Date since = new Date(System.currentTimeMillis() - Constants.MESSAGE_SYNC_MARGIN_MILLIS);
+        registration = FirebaseFirestore.getInstance()
+                .collectionGroup(Constants.KEY_COLLECTION_MESSAGES)
+                .whereEqualTo(Constants.KEY_RECEIVER_ID, userId)
+                .whereGreaterThan(Constants.KEY_TIMESTAMP, since)
+                .addSnapshotListener(inboxExecutor, new InstrumentedFirestore("Inbox").track("received messages", (value, error) -> {
+                    if (error != null) {
+                        onListenerFailed(listenGeneration, error);
+                    } else if (value != null) {
+                        route(value);
+                    }
+                }));
+    }
+
+
+    /**
+     * Drops a listener which Firestore has stopped, such as for a missing index or a denied
+     * permission, so the next start or subscription attaches a new one
+     * @param listenGeneration Which listener failed
+     * @param error The error
+     */
+    private synchronized void onListenerFailed(int listenGeneration, FirebaseFirestoreException error) {
+        Log.w("Inbox", "inbox listener stopped", error);
+        if (listenGeneration == generation && registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+
+    /**
+     * Returns the inbox thread. It outlives every screen, so message store writes which must
+     * happen after a screen is gone can run on it.
+     * @return The inbox executor
+     */
+    public Executor getExecutor() {
+        return inboxExecutor;
+    }
+
+
+    /**
+     * Stops listening, for when the user signs out
+     */
+    public synchronized void stop() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+        userId = null;
+    }
+
+
+    /**
+     * Subscribes to the messages sent to the user in one conversation, attaching the listener
+     * again if it failed
+     * @param conversationId The conversation, or null for every conversation
+     * @param executor The executor the changes are delivered on
+     * @param listener Receives the changes
+     * @return The registration which ends the subscription
+     */
+    public ListenerRegistration subscribe(String conversationId, Executor executor, InboxStreams.Listener listener) {
+        streams.subscribe(conversationId, executor, listener);
+        synchronized (this) {
+            if (registration == null && userId != null) {
+                listen();
+            }
+        }
+        return () -> streams.unsubscribe(conversationId, listener);
+    }
+
+
+    /**
+     * Saves a snapshot's changes and routes them by conversation. Runs on the inbox thread.
+     * @param value The inbox snapshot
+     */
+    private void route(QuerySnapshot value) {
+        Map<String, List<ChatMessage>> received = new HashMap<>();
+        Map<String, List<String>> removed = new HashMap<>();
+
+        for (DocumentChange documentChange : value.getDocumentChanges()) {
+            ChatMessage chatMessage = toChatMessage(documentChange.getDocument());
+            if (chatMessage == null) {
+                continue;
+            }
+
+            String conversationId = ConversationHelper.getConversationId(chatMessage.senderId, chatMessage.receiverId);
+            if (documentChange.getType() == DocumentChange.Type.REMOVED) {
+                removed.computeIfAbsent(conversationId, id -> new ArrayList<>()).add(chatMessage.id);
+            } else {
+                received.computeIfAbsent(conversationId, id -> new ArrayList<>()).add(chatMessage);
+            }
+        }
+
+        for (Map.Entry<String, List<ChatMessage>> conversation : received.entrySet()) {
+            messageStore.putMessages(conversation.getKey(), conversation.getValue());
+        }
+        for (List<String> removedIds : removed.values()) {
+            for (String id : removedIds) {
+                messageStore.removeMessage(id);
+            }
+        }
+
+        List<String> conversationIds = new ArrayList<>(received.keySet());
+        for (String conversationId : removed.keySet()) {
+            if (!received.containsKey(conversationId)) {
+                conversationIds.add(conversationId);
+            }
+        }
+        for (String conversationId : conversationIds) {
+            streams.publish(
+                    conversationId,
+                    received.getOrDefault(conversationId, new ArrayList<>()),
+                    removed.getOrDefault(conversationId, new ArrayList<>())
+            );
+        }
+    }
+
+
+    /**
+     * Builds the chat message held in a message document
+     * @param document The message document
+     * @return The message, or null if the document isn't a complete message
+     */
+    private static ChatMessage toChatMessage(DocumentSnapshot document) {
+        Date date = document.getDate(Constants.KEY_TIMESTAMP);
+        String senderId = document.getString(Constants.KEY_SENDER_ID);
+        String receiverId = document.getString(Constants.KEY_RECEIVER_ID);
+        if (date == null || senderId == null || receiverId == null) {
+            return null;
+        }
+
+        return new ChatMessage(
+                document.getId(),
+                senderId,
+                receiverId,
+                document.getString(Constants.KEY_MESSAGE),
+                null,
+                date
+        );
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.chatapp.firebase;
+
+import android.os.SystemClock;
+
+import com.example.chatapp.utilities.FirestoreMetrics;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.EventListener;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Transaction;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * A thin layer over Firestore calls which records each call's reads, writes, snapshot events
+ * and latency in the app's metrics, under the screen which made it and a name for the query.
+ * The returned tasks and registrations are Firestore's own.
+ */
+public class InstrumentedFirestore {
+
+    private final String screen;
+    private final FirestoreMetrics metrics;
+    private final LongSupplier clock;
+
+
+    /**
+     * Constructor
+     * @param screen The screen making the calls
+     */
+    public InstrumentedFirestore(String screen) {
+        this(screen, FirestoreMetrics.getInstance(), SystemClock::elapsedRealtime);
+    }
+
+
+    /**
+     * Constructor
+     * @param screen The screen making the calls
+     * @param metrics Where to record the calls
+     * @param clock Returns a monotonic time in milliseconds
+     */
+    InstrumentedFirestore(String screen, FirestoreMetrics metrics, LongSupplier clock) {
+        this.screen = screen;
+        this.metrics = metrics;
+        this.clock = clock;
+    }
+
+
+    /**
+     * Runs a query once
+     * @param name The name of the query
+     * @param query The query
+     * @return The query's task
+     */
+    public Task<QuerySnapshot> get(String name, Query query) {
+        return trackRead(name, query.get(), QuerySnapshot::size, value -> value.getMetadata().isFromCache());
+    }
+
+
+    /**
+     * Reads a document once
+     * @param name The name of the read
+     * @param document The document
+     * @return The read's task
+     */
+    public Task<DocumentSnapshot> get(String name, DocumentReference document) {
+        return trackRead(name, document.get(), value -> 1, value -> value.getMetadata().isFromCache());
+    }
+
+
+    /**
+     * Updates fields of a document
+     * @param name The name of the write
+     * @param document The document
+     * @param fields The changed fields
+     * @return The write's task
+     */
+    public Task<Void> update(String name, DocumentReference document, Map<String, Object> fields) {
+        return trackWrite(name, document.update(fields), 1);
+    }
+
+
+    /**
+     * Commits a batch
+     * @param name The name of the write
+     * @param batch The batch
+     * @param writes How many documents the batch writes
+     * @return The commit's task
+     */
+    public Task<Void> commit(String name, WriteBatch batch, int writes) {
+        return trackWrite(name, batch.commit(), writes);
+    }
+
+
+    /**
+     * Runs a transaction
+     * @param name The name of the transaction
+     * @param database The database
+     * @param function The transaction's reads and writes
+     * @param reads How many documents the transaction reads
+     * @param writes Returns how many documents a result says were written
+     * @param <T> The result type
+     * @return The transaction's task
+     */
+    public <T> Task<T> runTransaction(String name, FirebaseFirestore database, Transaction.Function<T> function,
+                                      int reads, ToIntFunction<T> writes) {
+        return trackTransaction(name, database.runTransaction(function), reads, writes);
+    }
+
+
+    /**
+     * Listens to a query
+     * @param name The name of the query
+     * @param query The query
+     * @param executor The executor the snapshots are delivered on
+     * @param listener Receives the snapshots
+     * @return The registration which stops listening
+     */
+    public ListenerRegistration listen(String name, Query query, Executor executor, EventListener<QuerySnapshot> listener) {
+        return query.addSnapshotListener(executor, track(name, listener));
+    }
+
+
+    /**
+     * Wraps a snapshot listener so its events are recorded
+     * @param name The name of the query
+     * @param listener Receives the snapshots
+     * @return The recording listener
+     */
+    public EventListener<QuerySnapshot> track(String name, EventListener<QuerySnapshot> listener) {
+        return (value, error) -> {
+            if (error != null) {
+                metrics.recordError(screen, name, -1);
+            } else if (value != null) {
+                metrics.recordSnapshot(screen, name, value.getDocumentChanges().size(), value.getMetadata().isFromCache());
+            }
+            listener.onEvent(value, error);
+        };
+    }
+
+
+    /**
+     * Records a read once its task finishes
+     * @param name The name of the read
+     * @param task The read's task, started just now
+     * @param documents Returns how many documents a result holds
+     * @param isFromCache Returns whether a result came from the local cache
+     * @param <T> The result type
+     * @return The same task
+     */
+    <T> Task<T> trackRead(String name, Task<T> task, ToIntFunction<T> documents, Predicate<T> isFromCache) {
+        long start = clock.getAsLong();
+        return task.addOnCompleteListener(Runnable::run, finished -> {
+            long latency = clock.getAsLong() - start;
+            if (finished.isSuccessful()) {
+                T result = finished.getResult();
+                metrics.recordRead(screen, name, documents.applyAsInt(result), isFromCache.test(result), latency);
+            } else {
+                metrics.recordError(screen, name, latency);
+            }
+        });
+    }
+
+
+    /**
+     * Records a transaction once its task finishes
+     * @param name The name of the transaction
+     * @param task The transaction's task, started just now
+     * @param reads How many documents the transaction reads
+     * @param writes Returns how many documents a result says were written
+     * @param <T> The result type
+     * @return The same task
+     */
+    <T> Task<T> trackTransaction(String name, Task<T> task, int reads, ToIntFunction<T> writes) {
+        long start = clock.getAsLong();
+        return task.addOnCompleteListener(Runnable::run, finished -> {
+            long latency = clock.getAsLong() - start;
+            if (finished.isSuccessful()) {
+                metrics.recordTransaction(screen, name, reads, writes.applyAsInt(finished.getResult()), latency);
+            } else {
+                metrics.recordError(screen, name, latency);
+            }
+        });
+    }
+
+
+    /**
+     * Records a write once its task finishes
+     * @param name The name of the write
+     * @param task The write's task, started just now
+     * @param writes How many documents are written
+     * @param <T> The result type
+     * @return The same task
+     */
+    <T> Task<T> trackWrite(String name, Task<T> task, int writes) {
+        long start = clock.getAsLong();
+        return task.addOnCompleteListener(Runnable::run, finished -> {
+            long latency = clock.getAsLong() - start;
+            if (finished.isSuccessful()) {
+                metrics.recordWrite(screen, name, writes, latency);
+            } else {
+                metrics.recordError(screen, name, latency);
+            }
+        });
+    }
+}
@@ -4,9 +4,16 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import com.example.chatapp.utilities.ChatNotifications;
+import com.example.chatapp.utilities.Constants;
+import com.example.chatapp.utilities.MessageStore;
+import com.example.chatapp.utilities.PushMessages;
+import com.example.chatapp.utilities.SessionManager;
 import com.google.firebase.messaging.FirebaseMessagingService;
 import com.google.firebase.messaging.RemoteMessage;
 
+import java.util.Map;
+
 /**
  * Firebase messaging class
  */
@@ -25,12 +32,29 @@ public class MessagingService extends FirebaseMessagingService {
 
 
     /**
-     * Logs a received message
+     * Saves a received chat message into the message store, so its conversation opens with it
+     * and the next sync only reconciles, then adds it to its conversation's notification.
+     * Runs on a background thread.
      * @param message Remote message that has been received.
      */
     @Override
     public void onMessageReceived(@NonNull RemoteMessage message) {
         super.onMessageReceived(message);
-        Log.d("FCM", "460 Message: " + message.getNotification().getBody());
+
+        // data-only messages have no notification
+        if (message.getNotification() != null) {
+            Log.d("FCM", "Message: " + message.getNotification().getBody());
+        }
+
+        Map<String, String> data = message.getData();
+        boolean isCached = !data.isEmpty() && PushMessages.cacheMessage(
+                data,
+                SessionManager.getInstance(getApplicationContext()).getSession().userId,
+                MessageStore.getInstance(getApplicationContext())
+        );
+        if (isCached) {
+            ChatNotifications.getInstance(getApplicationContext())
+                    .add(PushMessages.toChatMessage(data), data.get(Constants.KEY_SENDER_NAME));
+        }
     }
 }
@@ -0,0 +1,142 @@
+package com.example.chatapp.firebase;
+
+import com.example.chatapp.models.User;
+import com.example.chatapp.utilities.Constants;
+import com.example.chatapp.utilities.DirectorySummaries;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the directory summary documents in step with the user documents. Each summary holds
+ * a version, bumped on every change, and a map of compact user entries keyed by user ID.
+ * Users get an entry when they sign up, and users from before the summaries get theirs when
+ * they migrate their own image.
+ */
+public class UserDirectory {
+
+    private final FirebaseFirestore database;
+
+
+    /**
+     * Constructor
+     * @param database The database, which can be pointed at the emulator
+     */
+    public UserDirectory(FirebaseFirestore database) {
+        this.database = database;
+    }
+
+
+    /**
+     * Creates a user document along with other documents which belong to it. With directory
+     * summaries on, the user's summary is read and updated in the same transaction.
+     * @param firestore The layer which records the writes
+     * @param userReference The new user document
+     * @param user The user document's data
+     * @param otherDocuments Other documents to write with the user, such as their image
+     * @return A task which completes once everything is written
+     */
+    public Task<Void> createUser(InstrumentedFirestore firestore, DocumentReference userReference, Map<String, Object> user,
+                                 Map<DocumentReference, Map<String, Object>> otherDocuments) {
+        int writes = 1 + otherDocuments.size();
+        if (!Constants.USE_DIRECTORY_SUMMARIES) {
+            WriteBatch batch = database.batch();
+            batch.set(userReference, user);
+            for (Map.Entry<DocumentReference, Map<String, Object>> document : otherDocuments.entrySet()) {
+                batch.set(document.getKey(), document.getValue());
+            }
+            return firestore.commit("create user", batch, writes);
+        }
+
+        DocumentReference summaryReference = getSummary(userReference.getId());
+        // the summary is read and written as well
+        return firestore.runTransaction("create user", database, transaction -> {
+            DocumentSnapshot summary = transaction.get(summaryReference);
+            Long version = summary.getLong(Constants.KEY_VERSION);
+
+            transaction.set(userReference, user);
+            for (Map.Entry<DocumentReference, Map<String, Object>> document : otherDocuments.entrySet()) {
+                transaction.set(document.getKey(), document.getValue());
+            }
+            transaction.set(summaryReference, toSummaryUpdate(
+                    version == null ? 1 : version + 1,
+                    userReference.getId(),
+                    DirectorySummaries.toEntry(user)
+            ), SetOptions.merge());
+            return null;
+        }, 1, unused -> writes + 1);
+    }
+
+
+    /**
+     * Adds a change to a user's summary entry to a batch, if directory summaries are on
+     * @param batch The batch which also changes the user document
+     * @param userId The user's ID
+     * @param fields The changed entry fields
+     */
+    public void updateEntry(WriteBatch batch, String userId, Map<String, Object> fields) {
+        if (!Constants.USE_DIRECTORY_SUMMARIES) {
+            return;
+        }
+
+        batch.set(getSummary(userId), toSummaryUpdate(null, userId, fields), SetOptions.merge());
+    }
+
+
+    /**
+     * Reads the whole directory from its summaries
+     * @param firestore The layer which records the read
+     * @return A task with the users, ordered by first name
+     */
+    public Task<List<User>> getUsers(InstrumentedFirestore firestore) {
+        return firestore.get("directory summaries", database.collection(Constants.KEY_COLLECTION_DIRECTORY)).continueWith(task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+
+            List<Map<String, Object>> summaries = new ArrayList<>();
+            for (DocumentSnapshot document : task.getResult().getDocuments()) {
+                summaries.add(document.getData());
+            }
+            return DirectorySummaries.toUsers(summaries);
+        });
+    }
+
+
+    /**
+     * Returns the summary document a user's entry belongs to
+     * @param userId The user's ID
+     * @return The summary document
+     */
+    private DocumentReference getSummary(String userId) {
+        return database.collection(Constants.KEY_COLLECTION_DIRECTORY)
+                .document(DirectorySummaries.getSummaryId(userId));
+    }
+
+
+    /**
+     * Builds the merge update which writes one entry into a summary
+     * @param version The summary's new version, or null to bump it
+     * @param userId The user's ID
+     * @param entry The user's entry
+     * @return The update
+     */
+    private static Map<String, Object> toSummaryUpdate(Long version, String userId, Map<String, Object> entry) {
+        Map<String, Object> users = new HashMap<>();
+        users.put(userId, entry);
+
+        Map<String, Object> update = new HashMap<>();
+        update.put(Constants.KEY_VERSION, version == null ? FieldValue.increment(1) : version);
+        update.put(Constants.KEY_USERS, users);
+        return update;
+    }
+}
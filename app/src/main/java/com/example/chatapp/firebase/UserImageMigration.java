@@ -0,0 +1,94 @@
+package com.example.chatapp.firebase;
+
+import com.example.chatapp.utilities.Constants;
+import com.example.chatapp.utilities.DirectorySummaries;
+import com.example.chatapp.utilities.ImageLoader;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One-shot migration which moves profile images out of the user documents into their own
+ * documents in the user image collection, leaving only the image hash on the user document.
+ * Each user migrates their own image the first time they open the app after the update.
+ */
+public class UserImageMigration {
+
+    private final FirebaseFirestore database;
+
+
+    /**
+     * Constructor
+     * @param database The database to migrate, which can be pointed at the emulator
+     */
+    public UserImageMigration(FirebaseFirestore database) {
+        this.database = database;
+    }
+
+
+    /**
+     * Moves the image of one user
+     * @param firestore The layer which records the reads and writes
+     * @param userId The ID of the user
+     * @return A task with the user's image hash, or null if the user has no image
+     */
+    public Task<String> migrate(InstrumentedFirestore firestore, String userId) {
+        return firestore.get("image migration user", database.collection(Constants.KEY_COLLECTION_USERS).document(userId))
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) {
+                        return Tasks.forException(task.getException());
+                    }
+
+                    DocumentSnapshot document = task.getResult();
+                    if (document.getString(Constants.KEY_IMAGE) == null) {
+                        return Tasks.forResult(document.getString(Constants.KEY_IMAGE_HASH));
+                    }
+
+                    WriteBatch batch = database.batch();
+                    String imageHash = moveImage(batch, document);
+                    // the image document and the user, plus their summary entry
+                    int writes = Constants.USE_DIRECTORY_SUMMARIES ? 3 : 2;
+                    return firestore.commit("image migration", batch, writes).continueWith(commit -> {
+                        if (!commit.isSuccessful()) {
+                            throw commit.getException();
+                        }
+                        return imageHash;
+                    });
+                });
+    }
+
+
+    /**
+     * Adds the writes which move one user's image to a batch
+     * @param batch The batch
+     * @param document The user document, which still holds the image
+     * @return The hash of the moved image
+     */
+    private String moveImage(WriteBatch batch, DocumentSnapshot document) {
+        String image = document.getString(Constants.KEY_IMAGE);
+        String imageHash = ImageLoader.hashImage(image);
+
+        HashMap<String, Object> userImage = new HashMap<>();
+        userImage.put(Constants.KEY_IMAGE, image);
+        batch.set(database.collection(Constants.KEY_COLLECTION_USER_IMAGES).document(document.getId()), userImage);
+
+        HashMap<String, Object> updates = new HashMap<>();
+        updates.put(Constants.KEY_IMAGE_HASH, imageHash);
+        updates.put(Constants.KEY_IMAGE, FieldValue.delete());
+        updates.put(Constants.KEY_UPDATED_AT, FieldValue.serverTimestamp());
+        batch.update(document.getReference(), updates);
+
+        // the whole entry, since users from before the summaries have none yet
+        Map<String, Object> entry = DirectorySummaries.toEntry(document.getData());
+        entry.put(Constants.KEY_IMAGE_HASH, imageHash);
+        new UserDirectory(database).updateEntry(batch, document.getId(), entry);
+
+        return imageHash;
+    }
+}
@@ -1,16 +1,71 @@
 package com.example.chatapp.models;
 
 import java.util.Date;
+import java.util.Objects;
 
 /**
- * Chat message class
+ * Chat message class. Messages are built once from a snapshot and never changed afterwards,
+ * so they can be handed between threads.
  */
 public class ChatMessage {
 
-    public String senderId;
-    public String receiverId;
-    public String message;
-    public String datetime;
+    public final String id;
+    public final String senderId;
+    public final String receiverId;
+    public final String message;
+    public final String datetime;
 
-    public Date dateObject;
+    public final Date dateObject;
+
+
+    /**
+     * Constructor
+     * @param id The message's document ID
+     * @param senderId The ID of the user who sent the message
+     * @param receiverId The ID of the user who received the message
+     * @param message The message text
+     * @param datetime The readable send time
+     * @param dateObject The send time
+     */
+    public ChatMessage(String id, String senderId, String receiverId, String message, String datetime, Date dateObject) {
+        this.id = id;
+        this.senderId = senderId;
+        this.receiverId = receiverId;
+        this.message = message;
+        this.datetime = datetime;
+        this.dateObject = dateObject;
+    }
+
+
+    /**
+     * Checks if another object is a message with the same contents
+     * @param o The object to compare with
+     * @return true if both messages have the same contents, otherwise false
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ChatMessage)) {
+            return false;
+        }
+
+        ChatMessage other = (ChatMessage) o;
+        return Objects.equals(id, other.id)
+                && Objects.equals(senderId, other.senderId)
+                && Objects.equals(receiverId, other.receiverId)
+                && Objects.equals(message, other.message)
+                && Objects.equals(dateObject, other.dateObject);
+    }
+
+
+    /**
+     * Returns a hash code matching equals
+     * @return The hash code
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, senderId, receiverId, message, dateObject);
+    }
 }
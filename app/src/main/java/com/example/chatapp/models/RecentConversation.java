@@ -0,0 +1,67 @@
+package com.example.chatapp.models;
+
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * An entry of a user's recent conversations. Entries are built once from a snapshot and never
+ * changed afterwards.
+ */
+public class RecentConversation {
+
+    public final User user;
+    public final String lastMessage;
+    public final String lastSenderId;
+    public final Date dateObject;
+    public final long unreadCount;
+
+
+    /**
+     * Constructor
+     * @param user The other user in the conversation
+     * @param lastMessage The text of the newest message
+     * @param lastSenderId The ID of the user who sent the newest message
+     * @param dateObject The send time of the newest message
+     * @param unreadCount How many messages arrived since the conversation was last open
+     */
+    public RecentConversation(User user, String lastMessage, String lastSenderId, Date dateObject, long unreadCount) {
+        this.user = user;
+        this.lastMessage = lastMessage;
+        this.lastSenderId = lastSenderId;
+        this.dateObject = dateObject;
+        this.unreadCount = unreadCount;
+    }
+
+
+    /**
+     * Checks if another object is an entry with the same contents
+     * @param o The object to compare with
+     * @return true if both entries have the same contents, otherwise false
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RecentConversation)) {
+            return false;
+        }
+
+        RecentConversation other = (RecentConversation) o;
+        return Objects.equals(user, other.user)
+                && Objects.equals(lastMessage, other.lastMessage)
+                && Objects.equals(lastSenderId, other.lastSenderId)
+                && Objects.equals(dateObject, other.dateObject)
+                && unreadCount == other.unreadCount;
+    }
+
+
+    /**
+     * Returns a hash code matching equals
+     * @return The hash code
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(user, lastMessage, lastSenderId, dateObject, unreadCount);
+    }
+}
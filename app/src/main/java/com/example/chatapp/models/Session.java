@@ -0,0 +1,39 @@
+package com.example.chatapp.models;
+
+/**
+ * The signed in user's session, as kept on the device
+ */
+public class Session {
+
+    public boolean isSignedIn;
+    public String userId;
+    public String firstName;
+    public String lastName;
+    public String imageHash;
+    public String token;
+    public boolean isChatMigrated;
+    public boolean isImageMigrated;
+
+
+    /**
+     * Constructor for a signed out session
+     */
+    public Session() {
+    }
+
+
+    /**
+     * Constructor which copies another session
+     * @param other The session to copy
+     */
+    public Session(Session other) {
+        isSignedIn = other.isSignedIn;
+        userId = other.userId;
+        firstName = other.firstName;
+        lastName = other.lastName;
+        imageHash = other.imageHash;
+        token = other.token;
+        isChatMigrated = other.isChatMigrated;
+        isImageMigrated = other.isImageMigrated;
+    }
+}
@@ -1,17 +1,119 @@
 package com.example.chatapp.models;
 
-import java.io.Serializable;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.util.Objects;
 
 /**
  * User class
  */
-public class User implements Serializable {
+public class User implements Parcelable {
 
     public String firstName;
     public String lastName;
     public String image;
+    public String imageHash;
     public String email;
     public String token;
     public String id;
 
+
+    public static final Creator<User> CREATOR = new Creator<User>() {
+        @Override
+        public User createFromParcel(Parcel in) {
+            return new User(in);
+        }
+
+        @Override
+        public User[] newArray(int size) {
+            return new User[size];
+        }
+    };
+
+
+    /**
+     * Constructor
+     */
+    public User() {
+    }
+
+
+    /**
+     * Constructor which reads a user written by writeToParcel
+     * @param in The parcel to read
+     */
+    protected User(Parcel in) {
+        firstName = in.readString();
+        lastName = in.readString();
+        imageHash = in.readString();
+        image = in.readString();
+        email = in.readString();
+        token = in.readString();
+        id = in.readString();
+    }
+
+
+    /**
+     * Writes the user to a parcel. The inline image is left out to keep the parcel small when
+     * the image can be loaded again by its hash. Users who haven't been migrated yet have no
+     * image document to load it from, so theirs is kept.
+     * @param dest The parcel to write to
+     * @param flags Additional flags about how the object should be written
+     */
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(firstName);
+        dest.writeString(lastName);
+        dest.writeString(imageHash);
+        dest.writeString(imageHash == null ? image : null);
+        dest.writeString(email);
+        dest.writeString(token);
+        dest.writeString(id);
+    }
+
+
+    /**
+     * Describes the kinds of special objects in the parcel
+     * @return 0, as a user holds none
+     */
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+
+    /**
+     * Checks if another object is a user with the same details
+     * @param o The object to compare with
+     * @return true if both users have the same details, otherwise false
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof User)) {
+            return false;
+        }
+
+        User other = (User) o;
+        return Objects.equals(id, other.id)
+                && Objects.equals(firstName, other.firstName)
+                && Objects.equals(lastName, other.lastName)
+                && Objects.equals(image, other.image)
+                && Objects.equals(imageHash, other.imageHash)
+                && Objects.equals(email, other.email)
+                && Objects.equals(token, other.token);
+    }
+
+
+    /**
+     * Returns a hash code matching equals
+     * @return The hash code
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, firstName, lastName, image, imageHash, email, token);
+    }
 }
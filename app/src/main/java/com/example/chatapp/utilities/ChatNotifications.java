@@ -0,0 +1,162 @@
+package com.example.chatapp.utilities;
+
+import android.Manifest;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.os.Build;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.app.Person;
+import androidx.core.content.ContextCompat;
+
+import com.example.chatapp.R;
+import com.example.chatapp.activities.LaunchActivity;
+import com.example.chatapp.models.ChatMessage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+/**
+ * A class which shows one notification per conversation for pushed messages. Messages are
+ * coalesced, so a burst from one sender updates a single notification a few times.
+ */
+public class ChatNotifications {
+
+    private static final String CHANNEL_ID = "messages";
+    private static final int NOTIFICATION_ID = 1;
+
+    private static ChatNotifications instance;
+
+    private final Context context;
+    private final NotificationCoalescer<ChatMessage> coalescer;
+    private final Map<String, String> senderNames = new ConcurrentHashMap<>();
+    private volatile String openConversationId;
+
+
+    /**
+     * Returns the app's chat notifications
+     * @param context Any context, the application context is used
+     * @return The chat notifications
+     */
+    public static synchronized ChatNotifications getInstance(Context context) {
+        if (instance == null) {
+            instance = new ChatNotifications(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+
+    /**
+     * Constructor
+     * @param context The application context
+     */
+    private ChatNotifications(Context context) {
+        this.context = context;
+        coalescer = new NotificationCoalescer<>(
+                Executors.newSingleThreadScheduledExecutor(),
+                Constants.NOTIFICATION_WINDOW_MILLIS,
+                Constants.NOTIFICATION_MIN_INTERVAL_MILLIS,
+                Constants.NOTIFICATION_MAX_MESSAGES,
+                this::post
+        );
+        createChannel();
+    }
+
+
+    /**
+     * Adds a received message to its conversation's notification, unless that conversation
+     * is open on screen
+     * @param chatMessage The received message
+     * @param senderName The sender's name, or null if the push didn't carry it
+     */
+    public void add(ChatMessage chatMessage, String senderName) {
+        String conversationId = ConversationHelper.getConversationId(chatMessage.senderId, chatMessage.receiverId);
+        if (conversationId.equals(openConversationId)) {
+            return;
+        }
+
+        if (senderName != null) {
+            senderNames.put(conversationId, senderName);
+        }
+        coalescer.add(conversationId, chatMessage);
+    }
+
+
+    /**
+     * Marks a conversation as open on screen, removing its notification
+     * @param conversationId The open conversation, or null once it is closed
+     */
+    public void setOpenConversation(String conversationId) {
+        openConversationId = conversationId;
+        if (conversationId != null) {
+            coalescer.clear(conversationId);
+            NotificationManagerCompat.from(context).cancel(conversationId, NOTIFICATION_ID);
+        }
+    }
+
+
+    /**
+     * Posts or updates a conversation's notification, on the coalescer's thread
+     * @param conversationId The conversation
+     * @param chatMessages The conversation's newest unseen messages
+     * @param count How many messages arrived since the conversation was last opened
+     */
+    private void post(String conversationId, List<ChatMessage> chatMessages, int count) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(context, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            return;
+        }
+
+        String senderName = senderNames.get(conversationId);
+        Person sender = new Person.Builder()
+                .setKey(chatMessages.get(0).senderId)
+                .setName(senderName != null ? senderName : context.getString(R.string.app_name))
+                .build();
+        NotificationCompat.MessagingStyle style = new NotificationCompat.MessagingStyle(
+                new Person.Builder().setName(context.getString(R.string.you)).build()
+        );
+        for (ChatMessage chatMessage : chatMessages) {
+            style.addMessage(chatMessage.message, chatMessage.dateObject.getTime(), sender);
+        }
+
+        Intent intent = new Intent(context, LaunchActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        PendingIntent contentIntent = PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_IMMUTABLE);
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(R.drawable.icon_send)
+                .setStyle(style)
+                .setNumber(count)
+                .setCategory(NotificationCompat.CATEGORY_MESSAGE)
+                .setContentIntent(contentIntent)
+                .setAutoCancel(true)
+                // updates to a shown notification don't sound again
+                .setOnlyAlertOnce(true);
+        NotificationManagerCompat.from(context).notify(conversationId, NOTIFICATION_ID, builder.build());
+    }
+
+
+    /**
+     * Creates the message notification channel, which needs to exist before posting on API 26+
+     */
+    private void createChannel() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            return;
+        }
+
+        NotificationChannel channel = new NotificationChannel(
+                CHANNEL_ID,
+                context.getString(R.string.messages),
+                NotificationManager.IMPORTANCE_HIGH
+        );
+        context.getSystemService(NotificationManager.class).createNotificationChannel(channel);
+    }
+}
@@ -14,16 +14,75 @@ public class Constants {
     public static final String KEY_PASSWORD = "password";
     public static final String KEY_USER_ID = "userid";
     public static final String KEY_IS_SIGNED_IN = "isSignedIn";
+    public static final String KEY_IS_FAST_START = "isFastStart";
+    public static final String KEY_UPDATED_AT = "updatedAt";
 
     public static final String KEY_PREFERENCE_NAME = "chatAppPreference";
     public static final String KEY_IMAGE = "image";
 
+    public static final String KEY_COLLECTION_USER_IMAGES = "UserImage";
+    public static final String KEY_IMAGE_HASH = "imageHash";
+    public static final String KEY_IS_IMAGE_MIGRATED = "isImageMigrated";
+
+    public static final String KEY_COLLECTION_DIRECTORY = "directory";
+    public static final String KEY_USERS = "users";
+    public static final String KEY_VERSION = "version";
+
+    public static final int USER_PAGE_SIZE = 50;
+    public static final int USER_PREFETCH_DISTANCE = 10;
+    // a full directory download is marked up to date from this long before it started, so
+    // clock skew against the server's updatedAt times can't hide a change
+    public static final long USER_SYNC_MARGIN_MILLIS = 5 * 60 * 1000;
+
+    // read the user directory from a few summary documents instead of one document per user
+    public static final boolean USE_DIRECTORY_SUMMARIES = false;
+    // an entry takes about 150 bytes, so 16 summaries stay under the 1 MB document limit up to
+    // roughly 100k users
+    public static final int DIRECTORY_SUMMARY_COUNT = 16;
+
+    public static final int PROFILE_IMAGE_WIDTH = 150;
+    public static final int PROFILE_IMAGE_QUALITY = 75;
+    public static final int PROFILE_IMAGE_MAX_BYTES = 16 * 1024;
+
     public static final String KEY_FCM_TOKEN = "fcmToken";
     public static final String KEY_USER = "user";
+    public static final String KEY_RECEIVER_USER_ID = "receiverUserId";
 
     public static final String KEY_COLLECTION_CHAT = "chat";
     public static final String KEY_SENDER_ID = "senderId";
     public static final String KEY_RECEIVER_ID = "receiverId";
     public static final String KEY_MESSAGE = "message";
     public static final String KEY_TIMESTAMP = "timestamp";
+
+    public static final String KEY_COLLECTION_CONVERSATIONS = "conversations";
+    public static final String KEY_COLLECTION_MESSAGES = "messages";
+    public static final String KEY_IS_CHAT_MIGRATED = "isChatMigrated";
+
+    public static final String KEY_COLLECTION_BUCKETS = "buckets";
+    public static final String KEY_MESSAGES = "messages";
+    public static final String KEY_MESSAGE_ID = "id";
+
+    public static final int MESSAGE_PAGE_SIZE = 50;
+    public static final int MESSAGE_WINDOW_SIZE = 300;
+    public static final int MESSAGE_PREFETCH_DISTANCE = 10;
+    public static final long MESSAGE_SEND_WINDOW_MILLIS = 150;
+    // Firestore allows at most 500 writes in one batch, two go to the conversation index
+    public static final int MESSAGE_SEND_BATCH_SIZE = 498;
+    // message timestamps come from the sender's clock, which may be behind
+    public static final long MESSAGE_SYNC_MARGIN_MILLIS = 5 * 60 * 1000;
+
+    // store messages packed into hourly bucket documents instead of one document each
+    public static final boolean USE_MESSAGE_BUCKETS = false;
+    public static final int MESSAGE_BUCKET_PAGE_SIZE = 6;
+
+    public static final String KEY_SENDER_NAME = "senderName";
+    public static final long NOTIFICATION_WINDOW_MILLIS = 500;
+    // Android drops notification updates from apps which post too often
+    public static final long NOTIFICATION_MIN_INTERVAL_MILLIS = 2000;
+    public static final int NOTIFICATION_MAX_MESSAGES = 7;
+
+    public static final String KEY_COLLECTION_RECENT_CONVERSATIONS = "recentConversations";
+    public static final String KEY_LAST_MESSAGE = "lastMessage";
+    public static final String KEY_UNREAD_COUNT = "unreadCount";
+    public static final int RECENT_CONVERSATION_LIMIT = 50;
 }
@@ -0,0 +1,26 @@
+package com.example.chatapp.utilities;
+
+
+/**
+ * A class which works out where a conversation between two users is stored
+ */
+public class ConversationHelper {
+
+    private static final String SEPARATOR = "_";
+
+
+    /**
+     * Returns the ID of the conversation between two users. Both users get the same ID no
+     * matter which of them is passed first.
+     * @param userId The ID of one user in the conversation
+     * @param otherUserId The ID of the other user in the conversation
+     * @return The conversation ID
+     */
+    public static String getConversationId(String userId, String otherUserId) {
+        if (userId.compareTo(otherUserId) <= 0) {
+            return userId + SEPARATOR + otherUserId;
+        } else {
+            return otherUserId + SEPARATOR + userId;
+        }
+    }
+}
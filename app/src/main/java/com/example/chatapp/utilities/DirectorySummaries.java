@@ -0,0 +1,76 @@
+package com.example.chatapp.utilities;
+
+import com.example.chatapp.models.User;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class which packs compact user entries into a few summary documents, so reading the user
+ * directory costs one document read per summary instead of one per user. Each user always
+ * lands in the same summary, picked from a hash of their ID.
+ */
+public class DirectorySummaries {
+
+    private static final String SUMMARY_ID_PREFIX = "summary";
+
+
+    /**
+     * Returns the ID of the summary document a user's entry belongs to
+     * @param userId The user's ID
+     * @return The summary ID
+     */
+    public static String getSummaryId(String userId) {
+        return SUMMARY_ID_PREFIX + Math.floorMod(userId.hashCode(), Constants.DIRECTORY_SUMMARY_COUNT);
+    }
+
+
+    /**
+     * Returns the compact entry stored in a summary for a user, taken from their user document
+     * @param user The user document's data, or the fields being written to it
+     * @return The user entry
+     */
+    public static Map<String, Object> toEntry(Map<String, Object> user) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put(Constants.KEY_FIRST_NAME, user.get(Constants.KEY_FIRST_NAME));
+        entry.put(Constants.KEY_LAST_NAME, user.get(Constants.KEY_LAST_NAME));
+        entry.put(Constants.KEY_EMAIL, user.get(Constants.KEY_EMAIL));
+        entry.put(Constants.KEY_IMAGE_HASH, user.get(Constants.KEY_IMAGE_HASH));
+        return entry;
+    }
+
+
+    /**
+     * Unpacks the users of summary documents
+     * @param summaries The summary documents' data
+     * @return The users, ordered by first name like the directory query
+     */
+    @SuppressWarnings("unchecked")
+    public static List<User> toUsers(List<Map<String, Object>> summaries) {
+        List<User> users = new ArrayList<>();
+        for (Map<String, Object> data : summaries) {
+            if (data == null || !(data.get(Constants.KEY_USERS) instanceof Map)) {
+                continue;
+            }
+
+            Map<String, Object> entries = (Map<String, Object>) data.get(Constants.KEY_USERS);
+            for (Map.Entry<String, Object> item : entries.entrySet()) {
+                Map<String, Object> entry = (Map<String, Object>) item.getValue();
+                User user = new User();
+                user.id = item.getKey();
+                user.firstName = (String) entry.get(Constants.KEY_FIRST_NAME);
+                user.lastName = (String) entry.get(Constants.KEY_LAST_NAME);
+                user.email = (String) entry.get(Constants.KEY_EMAIL);
+                user.imageHash = (String) entry.get(Constants.KEY_IMAGE_HASH);
+                users.add(user);
+            }
+        }
+
+        users.sort(Comparator.comparing((User user) -> user.firstName, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(user -> user.id));
+        return users;
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.chatapp.utilities;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Counts the document reads, writes and snapshot events each screen and query causes, with
+ * the latency of each call, so their cost can be read off a device. Reads are counted the way
+ * Firestore bills them: a query reads at least one document, and results from the local
+ * cache read none.
+ */
+public class FirestoreMetrics {
+
+    /**
+     * The counters of one query on one screen
+     */
+    public static class Stats {
+        public final String screen;
+        public final String query;
+        public long calls = 0;
+        public long errors = 0;
+        public long reads = 0;
+        public long writes = 0;
+        public long snapshotEvents = 0;
+        public long cachedDocuments = 0;
+        public final LatencyHistogram latency;
+
+
+        /**
+         * Constructor
+         * @param screen The screen which made the calls
+         * @param query The name of the query
+         */
+        Stats(String screen, String query) {
+            this.screen = screen;
+            this.query = query;
+            latency = new LatencyHistogram();
+        }
+
+
+        /**
+         * Constructor which copies other counters
+         * @param other The counters to copy
+         */
+        Stats(Stats other) {
+            screen = other.screen;
+            query = other.query;
+            calls = other.calls;
+            errors = other.errors;
+            reads = other.reads;
+            writes = other.writes;
+            snapshotEvents = other.snapshotEvents;
+            cachedDocuments = other.cachedDocuments;
+            latency = new LatencyHistogram(other.latency);
+        }
+    }
+
+
+    private static FirestoreMetrics instance;
+
+    private final Map<String, Stats> stats = new LinkedHashMap<>();
+
+
+    /**
+     * Constructor, package-private so tests can count into their own metrics
+     */
+    FirestoreMetrics() {
+    }
+
+
+    /**
+     * Returns the app's metrics
+     * @return The metrics
+     */
+    public static synchronized FirestoreMetrics getInstance() {
+        if (instance == null) {
+            instance = new FirestoreMetrics();
+        }
+        return instance;
+    }
+
+
+    /**
+     * Records a finished read
+     * @param screen The screen which made the call
+     * @param query The name of the query
+     * @param documents How many documents the read returned
+     * @param isFromCache Whether the result came from the local cache
+     * @param latencyMillis How long the call took
+     */
+    public synchronized void recordRead(String screen, String query, int documents, boolean isFromCache, long latencyMillis) {
+        Stats queryStats = getOrCreate(screen, query);
+        queryStats.calls++;
+        if (isFromCache) {
+            queryStats.cachedDocuments += documents;
+        } else {
+            queryStats.reads += Math.max(1, documents);
+        }
+        queryStats.latency.add(latencyMillis);
+    }
+
+
+    /**
+     * Records a finished write
+     * @param screen The screen which made the call
+     * @param query The name of the write
+     * @param documents How many documents were written
+     * @param latencyMillis How long the call took
+     */
+    public synchronized void recordWrite(String screen, String query, int documents, long latencyMillis) {
+        Stats queryStats = getOrCreate(screen, query);
+        queryStats.calls++;
+        queryStats.writes += documents;
+        queryStats.latency.add(latencyMillis);
+    }
+
+
+    /**
+     * Records a finished transaction. Its reads are billed like document reads, never from
+     * the cache.
+     * @param screen The screen which made the call
+     * @param query The name of the transaction
+     * @param reads How many documents the transaction read
+     * @param writes How many documents the transaction wrote
+     * @param latencyMillis How long the call took
+     */
+    public synchronized void recordTransaction(String screen, String query, int reads, int writes, long latencyMillis) {
+        Stats queryStats = getOrCreate(screen, query);
+        queryStats.calls++;
+        queryStats.reads += reads;
+        queryStats.writes += writes;
+        queryStats.latency.add(latencyMillis);
+    }
+
+
+    /**
+     * Records a snapshot event delivered to a listener. Only changed documents are billed.
+     * @param screen The screen which owns the listener
+     * @param query The name of the query
+     * @param changes How many documents changed in the snapshot
+     * @param isFromCache Whether the snapshot came from the local cache
+     */
+    public synchronized void recordSnapshot(String screen, String query, int changes, boolean isFromCache) {
+        Stats queryStats = getOrCreate(screen, query);
+        queryStats.snapshotEvents++;
+        if (isFromCache) {
+            queryStats.cachedDocuments += changes;
+        } else {
+            queryStats.reads += changes;
+        }
+    }
+
+
+    /**
+     * Records a failed call or listener
+     * @param screen The screen which made the call
+     * @param query The name of the query
+     * @param latencyMillis How long the call took, or -1 for a listener error
+     */
+    public synchronized void recordError(String screen, String query, long latencyMillis) {
+        Stats queryStats = getOrCreate(screen, query);
+        queryStats.errors++;
+        if (latencyMillis >= 0) {
+            queryStats.calls++;
+            queryStats.latency.add(latencyMillis);
+        }
+    }
+
+
+    /**
+     * Returns a copy of every query's counters, in the order the queries were first seen
+     * @return The counters
+     */
+    public synchronized List<Stats> getStats() {
+        List<Stats> copies = new ArrayList<>();
+        for (Stats queryStats : stats.values()) {
+            copies.add(new Stats(queryStats));
+        }
+        return copies;
+    }
+
+
+    /**
+     * Returns the sum of a screen's counters over all its queries
+     * @param screen The screen
+     * @return The counters, with the query name "*"
+     */
+    public synchronized Stats getScreenTotals(String screen) {
+        Stats totals = new Stats(screen, "*");
+        for (Stats queryStats : stats.values()) {
+            if (queryStats.screen.equals(screen)) {
+                totals.calls += queryStats.calls;
+                totals.errors += queryStats.errors;
+                totals.reads += queryStats.reads;
+                totals.writes += queryStats.writes;
+                totals.snapshotEvents += queryStats.snapshotEvents;
+                totals.cachedDocuments += queryStats.cachedDocuments;
+            }
+        }
+        return totals;
+    }
+
+
+    /**
+     * Forgets every counter
+     */
+    public synchronized void reset() {
+        stats.clear();
+    }
+
+
+    /**
+     * Writes a report of every screen's totals followed by each of its queries
+     * @param writer Where to write the report
+     */
+    public void dump(PrintWriter writer) {
+        List<Stats> copies = getStats();
+        List<String> screens = new ArrayList<>();
+        for (Stats queryStats : copies) {
+            if (!screens.contains(queryStats.screen)) {
+                screens.add(queryStats.screen);
+            }
+        }
+
+        for (String screen : screens) {
+            Stats totals = getScreenTotals(screen);
+            writer.println(String.format(Locale.US, "%s: %d reads, %d writes, %d snapshot events, %d cached documents",
+                    screen, totals.reads, totals.writes, totals.snapshotEvents, totals.cachedDocuments));
+            for (Stats queryStats : copies) {
+                if (!queryStats.screen.equals(screen)) {
+                    continue;
+                }
+                writer.println(String.format(Locale.US,
+                        "  %s: %d calls, %d errors, %d reads, %d writes, %d snapshot events, %d cached documents, "
+                                + "latency mean %dms p50 %dms p90 %dms p99 %dms max %dms",
+                        queryStats.query, queryStats.calls, queryStats.errors, queryStats.reads, queryStats.writes,
+                        queryStats.snapshotEvents, queryStats.cachedDocuments, queryStats.latency.getMeanMillis(),
+                        queryStats.latency.getPercentileMillis(50), queryStats.latency.getPercentileMillis(90),
+                        queryStats.latency.getPercentileMillis(99), queryStats.latency.getMaxMillis()));
+            }
+        }
+        writer.flush();
+    }
+
+
+    /**
+     * Returns the report written by dump(PrintWriter)
+     * @return The report
+     */
+    public String dump() {
+        StringWriter report = new StringWriter();
+        dump(new PrintWriter(report));
+        return report.toString();
+    }
+
+
+    /**
+     * Returns a query's counters, creating them on first use
+     * @param screen The screen
+     * @param query The name of the query
+     * @return The counters
+     */
+    private Stats getOrCreate(String screen, String query) {
+        String key = screen + "/" + query;
+        Stats queryStats = stats.get(key);
+        if (queryStats == null) {
+            queryStats = new Stats(screen, query);
+            stats.put(key, queryStats);
+        }
+        return queryStats;
+    }
+}
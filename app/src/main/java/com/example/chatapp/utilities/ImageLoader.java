@@ -0,0 +1,424 @@
+package com.example.chatapp.utilities;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Base64;
+import android.util.LruCache;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import com.example.chatapp.firebase.InstrumentedFirestore;
+import com.example.chatapp.models.User;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * An app-wide loader for Base64 profile images. Images are decoded on a background pool at the
+ * size of the view showing them and kept in a memory cache keyed by user ID, a hash of the
+ * encoded image and the decoded size. Bitmaps evicted from the cache are reused for later
+ * decodes when no view is showing them. All public methods must be called on the main thread.
+ */
+public class ImageLoader {
+
+    private static final int DECODE_THREADS = 2;
+    private static final int MAX_REUSABLE_BITMAPS = 8;
+    private static final int IMAGE_HASH_BYTES = 16;
+
+    private static ImageLoader instance;
+
+    private final LruCache<String, Bitmap> bitmaps;
+    private final ExecutorService decodeExecutor = Executors.newFixedThreadPool(DECODE_THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // every screen shows images through this loader, so their downloads are counted together
+    private final InstrumentedFirestore firestore = new InstrumentedFirestore("ImageLoader");
+
+    private final Map<ImageView, Request> pendingRequests = new WeakHashMap<>();
+    private final Map<ImageView, Bitmap> shownBitmaps = new WeakHashMap<>();
+    private final List<Bitmap> reusableBitmaps = new ArrayList<>();
+
+
+    /**
+     * Returns the app's image loader
+     * @return The image loader
+     */
+    public static synchronized ImageLoader getInstance() {
+        if (instance == null) {
+            // an eighth of the heap, measured in kilobytes
+            int maxKilobytes = (int) (Runtime.getRuntime().maxMemory() / 1024 / 8);
+            instance = new ImageLoader(maxKilobytes);
+        }
+        return instance;
+    }
+
+
+    /**
+     * Constructor
+     * @param maxKilobytes The most bitmap memory the cache holds, in kilobytes
+     */
+    ImageLoader(int maxKilobytes) {
+        bitmaps = new LruCache<String, Bitmap>(maxKilobytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount() / 1024;
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (evicted && oldValue.isMutable() && !shownBitmaps.containsValue(oldValue)) {
+                    synchronized (reusableBitmaps) {
+                        if (reusableBitmaps.size() < MAX_REUSABLE_BITMAPS) {
+                            reusableBitmaps.add(oldValue);
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+
+    /**
+     * Returns the hash used to tell versions of an encoded image apart, the first 128 bits of
+     * the image's SHA-256 digest in hex. It is stored with the user and kept in cache keys, so
+     * two images must practically never share one.
+     * @param encodedImage The image stored as a Base64 String
+     * @return The image hash
+     */
+    public static String hashImage(String encodedImage) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(encodedImage.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        StringBuilder hash = new StringBuilder(IMAGE_HASH_BYTES * 2);
+        for (int i = 0; i < IMAGE_HASH_BYTES; i++) {
+            hash.append(String.format(Locale.ROOT, "%02x", digest[i]));
+        }
+        return hash.toString();
+    }
+
+
+    /**
+     * Shows a user's profile image in a view. A cached image is shown right away, otherwise the
+     * view is cleared and the image is decoded in the background at the view's size.
+     * @param userId The ID of the user the image belongs to
+     * @param encodedImage The image stored as a Base64 String
+     * @param imageView The view to show the image in
+     */
+    public void load(String userId, String encodedImage, ImageView imageView) {
+        cancel(imageView);
+        if (encodedImage == null) {
+            show(imageView, null);
+            return;
+        }
+
+        Request request = start(imageView, userId + ":" + hashImage(encodedImage));
+        if (request != null) {
+            decodeInBackground(request, encodedImage);
+        }
+    }
+
+
+    /**
+     * Shows a user's profile image in a view, downloading the user's image document only if
+     * that version of the image isn't cached
+     * @param userId The ID of the user the image belongs to
+     * @param imageHash The hash of the user's current image
+     * @param imageView The view to show the image in
+     */
+    public void loadUserImage(String userId, String imageHash, ImageView imageView) {
+        cancel(imageView);
+        if (imageHash == null) {
+            show(imageView, null);
+            return;
+        }
+
+        Request request = start(imageView, userId + ":" + imageHash);
+        if (request == null) {
+            return;
+        }
+
+        DocumentReference document = FirebaseFirestore.getInstance()
+                .collection(Constants.KEY_COLLECTION_USER_IMAGES)
+                .document(userId);
+        firestore.get("user image", document)
+                .addOnSuccessListener(snapshot -> {
+                    if (!request.isCancelled) {
+                        decodeInBackground(request, snapshot.getString(Constants.KEY_IMAGE));
+                    }
+                })
+                // a failed download leaves nothing cached, so the next load tries again
+                .addOnFailureListener(e -> finish(request, null));
+    }
+
+
+    /**
+     * Shows a user's profile image, whether the user still carries the encoded image or only
+     * its hash
+     * @param user The user
+     * @param imageView The view to show the image in
+     */
+    public void load(User user, ImageView imageView) {
+        if (user.image != null) {
+            load(user.id, user.image, imageView);
+        } else {
+            loadUserImage(user.id, user.imageHash, imageView);
+        }
+    }
+
+
+    /**
+     * Cancels the pending load for a view, such as when its ViewHolder is recycled
+     * @param imageView The view whose load to cancel
+     */
+    public void cancel(ImageView imageView) {
+        Request request = pendingRequests.remove(imageView);
+        if (request != null) {
+            request.isCancelled = true;
+            if (request.future != null) {
+                request.future.cancel(false);
+            }
+        }
+    }
+
+
+    /**
+     * Shows a cached image, or clears the view and starts a request for it
+     * @param imageView The view to show the image in
+     * @param imageKey The user ID and image hash
+     * @return The new request, or null if the cached image was shown
+     */
+    private Request start(ImageView imageView, String imageKey) {
+        int width = getTargetSize(imageView, true);
+        int height = getTargetSize(imageView, false);
+        String key = imageKey + ":" + width + "x" + height;
+
+        Bitmap cached = bitmaps.get(key);
+        if (cached != null) {
+            show(imageView, cached);
+            return null;
+        }
+
+        show(imageView, null);
+        Request request = new Request(imageView, key, width, height);
+        pendingRequests.put(imageView, request);
+        return request;
+    }
+
+
+    /**
+     * Decodes an image for a request on the decode pool and shows it on the main thread
+     * @param request The request
+     * @param encodedImage The image stored as a Base64 String
+     */
+    private void decodeInBackground(Request request, String encodedImage) {
+        if (encodedImage == null) {
+            finish(request, null);
+            return;
+        }
+
+        request.future = decodeExecutor.submit(() -> {
+            Bitmap bitmap;
+            try {
+                bitmap = decode(encodedImage, request.width, request.height);
+            } catch (IllegalArgumentException e) {
+                // malformed Base64, which the future would swallow and leave the request pending
+                bitmap = null;
+            }
+            Bitmap decoded = bitmap;
+            mainHandler.post(() -> finish(request, decoded));
+        });
+    }
+
+
+    /**
+     * Caches and shows a decoded image, unless its view has been given another image since
+     * @param request The request
+     * @param bitmap The decoded image, or null if it couldn't be decoded
+     */
+    private void finish(Request request, Bitmap bitmap) {
+        if (request.isCancelled || pendingRequests.get(request.imageView) != request) {
+            return;
+        }
+
+        pendingRequests.remove(request.imageView);
+        if (bitmap != null) {
+            bitmaps.put(request.key, bitmap);
+        }
+        show(request.imageView, bitmap);
+    }
+
+
+    /**
+     * Returns how many lookups found a cached image
+     * @return The number of cache hits
+     */
+    public int getHitCount() {
+        return bitmaps.hitCount();
+    }
+
+
+    /**
+     * Returns how many lookups had to decode the image
+     * @return The number of cache misses
+     */
+    public int getMissCount() {
+        return bitmaps.missCount();
+    }
+
+
+    /**
+     * Shows a bitmap in a view and remembers which bitmap the view is showing
+     * @param imageView The view
+     * @param bitmap The bitmap, or null to clear the view
+     */
+    private void show(ImageView imageView, Bitmap bitmap) {
+        imageView.setImageBitmap(bitmap);
+        if (bitmap == null) {
+            shownBitmaps.remove(imageView);
+        } else {
+            shownBitmaps.put(imageView, bitmap);
+        }
+    }
+
+
+    /**
+     * Returns the size in pixels to decode for a view, taken from its layout size when it is fixed
+     * @param imageView The view
+     * @param width Whether to return the width or the height
+     * @return The size in pixels, or 0 if the view has no known size
+     */
+    private static int getTargetSize(ImageView imageView, boolean width) {
+        ViewGroup.LayoutParams params = imageView.getLayoutParams();
+        int size = params == null ? 0 : (width ? params.width : params.height);
+        if (size <= 0) {
+            size = width ? imageView.getWidth() : imageView.getHeight();
+        }
+        return Math.max(size, 0);
+    }
+
+
+    /**
+     * Decodes an image at close to a target size, reusing an evicted bitmap's memory if one fits.
+     * Runs on a decode thread.
+     * @param encodedImage The image stored as a Base64 String
+     * @param width The target width in pixels, or 0 for the full size
+     * @param height The target height in pixels, or 0 for the full size
+     * @return The decoded bitmap, or null if it couldn't be decoded
+     */
+    private Bitmap decode(String encodedImage, int width, int height) {
+        byte[] bytes = Base64.decode(encodedImage, Base64.DEFAULT);
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, width, height);
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inBitmap = takeReusableBitmap(options);
+
+        try {
+            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        } catch (IllegalArgumentException e) {
+            // the reused bitmap didn't fit after all
+            options.inBitmap = null;
+            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        }
+    }
+
+
+    /**
+     * Returns the largest power of two sample size which keeps the image at least as large as the
+     * target size
+     * @param imageWidth The full image width
+     * @param imageHeight The full image height
+     * @param width The target width, or 0 for the full size
+     * @param height The target height, or 0 for the full size
+     * @return The sample size
+     */
+    static int calculateInSampleSize(int imageWidth, int imageHeight, int width, int height) {
+        int inSampleSize = 1;
+        if (width <= 0 || height <= 0) {
+            return inSampleSize;
+        }
+
+        while (imageWidth / (inSampleSize * 2) >= width && imageHeight / (inSampleSize * 2) >= height) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+
+    /**
+     * Takes a bitmap from the reuse pool which is large enough for a decode
+     * @param options The decode options, with the image bounds and sample size set
+     * @return A bitmap whose memory can be reused, or null if none fits
+     */
+    private Bitmap takeReusableBitmap(BitmapFactory.Options options) {
+        int width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+        int height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+        int byteCount = width * height * 4;
+
+        synchronized (reusableBitmaps) {
+            Iterator<Bitmap> iterator = reusableBitmaps.iterator();
+            while (iterator.hasNext()) {
+                Bitmap candidate = iterator.next();
+                if (candidate.isRecycled()) {
+                    iterator.remove();
+                } else if (candidate.getAllocationByteCount() >= byteCount) {
+                    iterator.remove();
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * A pending image load for one view
+     */
+    private static class Request {
+
+        final ImageView imageView;
+        final String key;
+        final int width;
+        final int height;
+
+        volatile boolean isCancelled = false;
+        volatile Future<?> future;
+
+
+        /**
+         * Constructor
+         * @param imageView The view to show the image in
+         * @param key The cache key of the decoded image
+         * @param width The target width in pixels
+         * @param height The target height in pixels
+         */
+        Request(ImageView imageView, String key, int width, int height) {
+            this.imageView = imageView;
+            this.key = key;
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.chatapp.utilities;
+
+import com.example.chatapp.models.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * A class which routes incoming message changes to the screens subscribed to their
+ * conversation, so one inbox query can feed any number of open conversations
+ */
+public class InboxStreams {
+
+    /**
+     * Interface for receiving the message changes of a conversation
+     */
+    public interface Listener {
+
+        /**
+         * Receives a conversation's changed messages
+         * @param conversationId The conversation the messages belong to
+         * @param received Messages that were added or changed
+         * @param removedIds The IDs of messages that were deleted
+         */
+        void onMessages(String conversationId, List<ChatMessage> received, List<String> removedIds);
+    }
+
+
+    /**
+     * A listener and the executor its changes are delivered on
+     */
+    private static class Subscriber {
+        final Executor executor;
+        final Listener listener;
+
+        /**
+         * Constructor
+         * @param executor The executor the changes are delivered on
+         * @param listener Receives the changes
+         */
+        Subscriber(Executor executor, Listener listener) {
+            this.executor = executor;
+            this.listener = listener;
+        }
+    }
+
+
+    // subscribers to every conversation are kept under the null key
+    private final Map<String, List<Subscriber>> subscribers = new HashMap<>();
+
+
+    /**
+     * Subscribes to the message changes of one conversation
+     * @param conversationId The conversation, or null for every conversation
+     * @param executor The executor the changes are delivered on
+     * @param listener Receives the changes
+     */
+    public synchronized void subscribe(String conversationId, Executor executor, Listener listener) {
+        List<Subscriber> conversationSubscribers = subscribers.get(conversationId);
+        if (conversationSubscribers == null) {
+            conversationSubscribers = new ArrayList<>();
+            subscribers.put(conversationId, conversationSubscribers);
+        }
+        conversationSubscribers.add(new Subscriber(executor, listener));
+    }
+
+
+    /**
+     * Stops delivering changes to a listener
+     * @param conversationId The conversation the listener was subscribed to
+     * @param listener The listener
+     */
+    public synchronized void unsubscribe(String conversationId, Listener listener) {
+        List<Subscriber> conversationSubscribers = subscribers.get(conversationId);
+        if (conversationSubscribers == null) {
+            return;
+        }
+
+        conversationSubscribers.removeIf(subscriber -> subscriber.listener == listener);
+        if (conversationSubscribers.isEmpty()) {
+            subscribers.remove(conversationId);
+        }
+    }
+
+
+    /**
+     * Delivers a conversation's changes to its subscribers and to the subscribers of every
+     * conversation
+     * @param conversationId The conversation the messages belong to
+     * @param received Messages that were added or changed
+     * @param removedIds The IDs of messages that were deleted
+     */
+    public void publish(String conversationId, List<ChatMessage> received, List<String> removedIds) {
+        if (received.isEmpty() && removedIds.isEmpty()) {
+            return;
+        }
+
+        List<Subscriber> targets = new ArrayList<>();
+        synchronized (this) {
+            if (subscribers.containsKey(conversationId)) {
+                targets.addAll(subscribers.get(conversationId));
+            }
+            if (subscribers.containsKey(null)) {
+                targets.addAll(subscribers.get(null));
+            }
+        }
+
+        for (Subscriber subscriber : targets) {
+            subscriber.executor.execute(() -> subscriber.listener.onMessages(conversationId, received, removedIds));
+        }
+    }
+
+
+    /**
+     * Returns how many listeners are subscribed
+     * @return The number of listeners
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (List<Subscriber> conversationSubscribers : subscribers.values()) {
+            size += conversationSubscribers.size();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.chatapp.utilities;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of call latencies in fixed buckets, cheap enough to update on every call.
+ * Percentiles are reported as the upper bound of the bucket they fall in.
+ */
+public class LatencyHistogram {
+
+    // upper bounds in milliseconds, anything slower lands in one last bucket
+    static final long[] BOUNDS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000};
+
+    private final long[] counts = new long[BOUNDS.length + 1];
+    private long count = 0;
+    private long totalMillis = 0;
+    private long maxMillis = 0;
+
+
+    /**
+     * Constructor for an empty histogram
+     */
+    public LatencyHistogram() {
+    }
+
+
+    /**
+     * Constructor which copies another histogram
+     * @param other The histogram to copy
+     */
+    public LatencyHistogram(LatencyHistogram other) {
+        System.arraycopy(other.counts, 0, counts, 0, counts.length);
+        count = other.count;
+        totalMillis = other.totalMillis;
+        maxMillis = other.maxMillis;
+    }
+
+
+    /**
+     * Records one call
+     * @param millis How long the call took
+     */
+    public void add(long millis) {
+        int bucket = Arrays.binarySearch(BOUNDS, millis);
+        if (bucket < 0) {
+            bucket = -bucket - 1;
+        }
+        counts[bucket]++;
+        count++;
+        totalMillis += millis;
+        maxMillis = Math.max(maxMillis, millis);
+    }
+
+
+    /**
+     * Returns how many calls were recorded
+     * @return The number of calls
+     */
+    public long getCount() {
+        return count;
+    }
+
+
+    /**
+     * Returns the mean latency
+     * @return The mean in milliseconds, or 0 without calls
+     */
+    public long getMeanMillis() {
+        return count == 0 ? 0 : totalMillis / count;
+    }
+
+
+    /**
+     * Returns the slowest call
+     * @return The maximum in milliseconds
+     */
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+
+    /**
+     * Returns the latency which a share of the calls stayed within
+     * @param percentile The share of calls, from 0 to 100
+     * @return The upper bound of the percentile's bucket in milliseconds, or the maximum for
+     *     the last bucket, or 0 without calls
+     */
+    public long getPercentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(BOUNDS[i], maxMillis);
+            }
+        }
+        return maxMillis;
+    }
+}
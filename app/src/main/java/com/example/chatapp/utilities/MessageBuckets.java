@@ -0,0 +1,82 @@
+package com.example.chatapp.utilities;
+
+import com.example.chatapp.models.ChatMessage;
+import com.google.firebase.Timestamp;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.function.Function;
+
+/**
+ * A class which packs chat messages into one document per conversation per hour, so reading
+ * a conversation costs one document read per hour of messages instead of one per message
+ */
+public class MessageBuckets {
+
+    private static final String BUCKET_ID_PATTERN = "yyyyMMddHH";
+
+
+    /**
+     * Returns the ID of the bucket a message sent at a time belongs to. IDs sort in time order.
+     * @param date The time the message was sent
+     * @return The bucket ID
+     */
+    public static String getBucketId(Date date) {
+        SimpleDateFormat format = new SimpleDateFormat(BUCKET_ID_PATTERN, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(date);
+    }
+
+
+    /**
+     * Returns the compact entry stored in a bucket's message array for a message
+     * @param chatMessage The message to store
+     * @return The message entry
+     */
+    public static Map<String, Object> toEntry(ChatMessage chatMessage) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put(Constants.KEY_MESSAGE_ID, chatMessage.id);
+        entry.put(Constants.KEY_SENDER_ID, chatMessage.senderId);
+        entry.put(Constants.KEY_RECEIVER_ID, chatMessage.receiverId);
+        entry.put(Constants.KEY_MESSAGE, chatMessage.message);
+        entry.put(Constants.KEY_TIMESTAMP, chatMessage.dateObject);
+        return entry;
+    }
+
+
+    /**
+     * Unpacks the messages of a bucket document
+     * @param data The bucket document's data
+     * @param formatter Builds the readable send time of a message
+     * @return The bucket's messages, in the order they were appended
+     */
+    @SuppressWarnings("unchecked")
+    public static List<ChatMessage> toChatMessages(Map<String, Object> data, Function<Date, String> formatter) {
+        List<ChatMessage> chatMessages = new ArrayList<>();
+        if (data == null || !(data.get(Constants.KEY_MESSAGES) instanceof List)) {
+            return chatMessages;
+        }
+
+        for (Object item : (List<Object>) data.get(Constants.KEY_MESSAGES)) {
+            Map<String, Object> entry = (Map<String, Object>) item;
+            Object timestamp = entry.get(Constants.KEY_TIMESTAMP);
+            Date date = timestamp instanceof Timestamp ? ((Timestamp) timestamp).toDate() : (Date) timestamp;
+
+            chatMessages.add(new ChatMessage(
+                    (String) entry.get(Constants.KEY_MESSAGE_ID),
+                    (String) entry.get(Constants.KEY_SENDER_ID),
+                    (String) entry.get(Constants.KEY_RECEIVER_ID),
+                    (String) entry.get(Constants.KEY_MESSAGE),
+                    formatter.apply(date),
+                    date
+            ));
+        }
+        return chatMessages;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.chatapp.utilities;
+
+import com.example.chatapp.models.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A list of chat messages which is always kept in timestamp order
+ */
+public class MessageBuffer {
+
+    private final List<ChatMessage> chatMessages;
+    private final Map<String, ChatMessage> messagesById;
+    private final Comparator<ChatMessage> comparator;
+
+
+    /**
+     * Constructor which orders messages by their timestamp
+     */
+    public MessageBuffer() {
+        this((obj1, obj2) -> obj1.dateObject.compareTo(obj2.dateObject));
+    }
+
+
+    /**
+     * Constructor
+     * @param comparator The comparator used to order the messages
+     */
+    public MessageBuffer(Comparator<ChatMessage> comparator) {
+        this.chatMessages = new ArrayList<>();
+        this.messagesById = new HashMap<>();
+        this.comparator = comparator;
+    }
+
+
+    /**
+     * Inserts a message at its timestamp slot. Messages with equal timestamps keep their
+     * arrival order. A message with the same ID as one already in the buffer replaces it.
+     * @param chatMessage The message to insert
+     * @return The index the message was inserted at
+     */
+    public int insert(ChatMessage chatMessage) {
+        if (chatMessage.id != null) {
+            remove(chatMessage.id);
+            messagesById.put(chatMessage.id, chatMessage);
+        }
+
+        int index = upperBound(chatMessage);
+        chatMessages.add(index, chatMessage);
+        return index;
+    }
+
+
+    /**
+     * Removes the message with an ID
+     * @param id The ID of the message to remove
+     * @return The index the message was removed from, or -1 if it wasn't in the buffer
+     */
+    public int remove(String id) {
+        ChatMessage chatMessage = messagesById.remove(id);
+        if (chatMessage == null) {
+            return -1;
+        }
+
+        // the message is somewhere in the run of messages that compare equal to it
+        for (int i = lowerBound(chatMessage); i < chatMessages.size(); i++) {
+            if (chatMessages.get(i) == chatMessage) {
+                chatMessages.remove(i);
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Checks if the buffer holds a message with an ID
+     * @param id The message ID
+     * @return true if the message is in the buffer, otherwise false
+     */
+    public boolean contains(String id) {
+        return messagesById.containsKey(id);
+    }
+
+
+    /**
+     * Returns the index of the first message that sorts after the given message
+     * @param chatMessage The message to search for
+     * @return The index after the last message comparing equal to chatMessage
+     */
+    private int upperBound(ChatMessage chatMessage) {
+        int low = 0;
+        int high = chatMessages.size();
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparator.compare(chatMessages.get(middle), chatMessage) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * Returns the index of the first message that doesn't sort before the given message
+     * @param chatMessage The message to search for
+     * @return The index of the first message comparing equal to or after chatMessage
+     */
+    private int lowerBound(ChatMessage chatMessage) {
+        int low = 0;
+        int high = chatMessages.size();
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparator.compare(chatMessages.get(middle), chatMessage) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * Removes the newest messages until at most maxSize messages are left
+     * @param maxSize The number of messages to keep
+     * @return How many messages were removed from the end of the buffer
+     */
+    public int trimNewest(int maxSize) {
+        int removed = Math.max(0, chatMessages.size() - maxSize);
+        if (removed > 0) {
+            List<ChatMessage> dropped = chatMessages.subList(maxSize, chatMessages.size());
+            forget(dropped);
+            dropped.clear();
+        }
+        return removed;
+    }
+
+
+    /**
+     * Removes the oldest messages until at most maxSize messages are left
+     * @param maxSize The number of messages to keep
+     * @return How many messages were removed from the start of the buffer
+     */
+    public int trimOldest(int maxSize) {
+        int removed = Math.max(0, chatMessages.size() - maxSize);
+        if (removed > 0) {
+            List<ChatMessage> dropped = chatMessages.subList(0, removed);
+            forget(dropped);
+            dropped.clear();
+        }
+        return removed;
+    }
+
+
+    /**
+     * Removes messages from the ID index
+     * @param dropped The messages being dropped from the buffer
+     */
+    private void forget(List<ChatMessage> dropped) {
+        for (ChatMessage chatMessage : dropped) {
+            if (chatMessage.id != null) {
+                messagesById.remove(chatMessage.id);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the oldest message in the buffer
+     * @return The oldest message, or null if the buffer is empty
+     */
+    public ChatMessage first() {
+        return chatMessages.isEmpty() ? null : chatMessages.get(0);
+    }
+
+
+    /**
+     * Returns the newest message in the buffer
+     * @return The newest message, or null if the buffer is empty
+     */
+    public ChatMessage last() {
+        return chatMessages.isEmpty() ? null : chatMessages.get(chatMessages.size() - 1);
+    }
+
+
+    /**
+     * Returns the list backing this buffer, which can be given to an adapter
+     * @return The ordered messages
+     */
+    public List<ChatMessage> getMessages() {
+        return chatMessages;
+    }
+
+
+    /**
+     * Returns how many messages are in the buffer
+     * @return The number of messages in the buffer
+     */
+    public int size() {
+        return chatMessages.size();
+    }
+}
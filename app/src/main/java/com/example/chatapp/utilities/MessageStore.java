@@ -0,0 +1,217 @@
+package com.example.chatapp.utilities;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.example.chatapp.models.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A class which keeps chat messages on disk, so a conversation can be shown before the
+ * network answers. Calls do disk IO and shouldn't be made on the main thread.
+ * Messages can be stored out of order, for example from the inbox or a push, so each
+ * conversation also keeps the send time up to which its stored messages are complete.
+ */
+public class MessageStore extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "messages.db";
+    private static final int DATABASE_VERSION = 2;
+
+    static final String TABLE_MESSAGES = "messages";
+    private static final String COLUMN_ID = "id";
+    private static final String COLUMN_CONVERSATION_ID = "conversationId";
+    private static final String COLUMN_SENDER_ID = "senderId";
+    private static final String COLUMN_RECEIVER_ID = "receiverId";
+    private static final String COLUMN_MESSAGE = "message";
+    private static final String COLUMN_TIMESTAMP = "timestamp";
+
+    private static final String TABLE_CONVERSATIONS = "conversations";
+    private static final String COLUMN_SYNCED_AT = "syncedAt";
+
+    private static MessageStore instance;
+
+
+    /**
+     * Returns the app's message store
+     * @param context Any context, the application context is used
+     * @return The message store
+     */
+    public static synchronized MessageStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new MessageStore(context.getApplicationContext(), DATABASE_NAME);
+        }
+        return instance;
+    }
+
+
+    /**
+     * Constructor
+     * @param context Context used to open the database
+     * @param name The database file name, or null for an in-memory database
+     */
+    MessageStore(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+
+    /**
+     * Creates the message table, its conversation/timestamp index and the conversation table
+     * @param db The database.
+     */
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_MESSAGES + " ("
+                + COLUMN_ID + " TEXT PRIMARY KEY, "
+                + COLUMN_CONVERSATION_ID + " TEXT NOT NULL, "
+                + COLUMN_SENDER_ID + " TEXT, "
+                + COLUMN_RECEIVER_ID + " TEXT, "
+                + COLUMN_MESSAGE + " TEXT, "
+                + COLUMN_TIMESTAMP + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX index_messages_conversation_timestamp ON " + TABLE_MESSAGES
+                + " (" + COLUMN_CONVERSATION_ID + ", " + COLUMN_TIMESTAMP + ")");
+        db.execSQL("CREATE TABLE " + TABLE_CONVERSATIONS + " ("
+                + COLUMN_CONVERSATION_ID + " TEXT PRIMARY KEY, "
+                + COLUMN_SYNCED_AT + " INTEGER NOT NULL)");
+    }
+
+
+    /**
+     * Drops the cached messages when the schema changes, they can be fetched again
+     * @param db The database.
+     * @param oldVersion The old database version.
+     * @param newVersion The new database version.
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_MESSAGES);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_CONVERSATIONS);
+        onCreate(db);
+    }
+
+
+    /**
+     * Saves messages, replacing any stored message with the same ID
+     * @param conversationId The conversation the messages belong to
+     * @param chatMessages The messages to save
+     */
+    public void putMessages(String conversationId, List<ChatMessage> chatMessages) {
+        if (chatMessages.isEmpty()) {
+            return;
+        }
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (ChatMessage chatMessage : chatMessages) {
+                values.put(COLUMN_ID, chatMessage.id);
+                values.put(COLUMN_CONVERSATION_ID, conversationId);
+                values.put(COLUMN_SENDER_ID, chatMessage.senderId);
+                values.put(COLUMN_RECEIVER_ID, chatMessage.receiverId);
+                values.put(COLUMN_MESSAGE, chatMessage.message);
+                values.put(COLUMN_TIMESTAMP, chatMessage.dateObject.getTime());
+                db.insertWithOnConflict(TABLE_MESSAGES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+
+    /**
+     * Deletes a stored message
+     * @param id The ID of the message to delete
+     */
+    public void removeMessage(String id) {
+        getWritableDatabase().delete(TABLE_MESSAGES, COLUMN_ID + " = ?", new String[]{id});
+    }
+
+
+    /**
+     * Returns the send time up to which a conversation's stored messages are complete
+     * @param conversationId The conversation
+     * @return The send time, or null if the conversation was never synced
+     */
+    public Date getSyncedAt(String conversationId) {
+        try (Cursor cursor = getReadableDatabase().query(
+                TABLE_CONVERSATIONS,
+                new String[]{COLUMN_SYNCED_AT},
+                COLUMN_CONVERSATION_ID + " = ?",
+                new String[]{conversationId},
+                null,
+                null,
+                null)) {
+            return cursor.moveToFirst() ? new Date(cursor.getLong(0)) : null;
+        }
+    }
+
+
+    /**
+     * Moves the send time up to which a conversation's stored messages are complete forward.
+     * Only a query which read every message after the previous sync point may move it, never
+     * messages stored one by one.
+     * @param conversationId The conversation
+     * @param syncedAt The send time of the newest message the query read
+     */
+    public void setSyncedAt(String conversationId, Date syncedAt) {
+        SQLiteDatabase db = getWritableDatabase();
+        long time = syncedAt.getTime();
+        db.beginTransaction();
+        try {
+            db.execSQL("INSERT OR IGNORE INTO " + TABLE_CONVERSATIONS + " VALUES (?, ?)",
+                    new Object[]{conversationId, time});
+            db.execSQL("UPDATE " + TABLE_CONVERSATIONS + " SET " + COLUMN_SYNCED_AT
+                            + " = MAX(" + COLUMN_SYNCED_AT + ", ?) WHERE " + COLUMN_CONVERSATION_ID + " = ?",
+                    new Object[]{time, conversationId});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+
+    /**
+     * Returns the newest stored messages of a conversation with one indexed query
+     * @param conversationId The conversation to read
+     * @param limit The most messages to return
+     * @param formatter Builds the readable send time of a message
+     * @return The messages, oldest first
+     */
+    public List<ChatMessage> getLatestMessages(String conversationId, int limit, Function<Date, String> formatter) {
+        List<ChatMessage> chatMessages = new ArrayList<>();
+
+        try (Cursor cursor = getReadableDatabase().query(
+                TABLE_MESSAGES,
+                new String[]{COLUMN_ID, COLUMN_SENDER_ID, COLUMN_RECEIVER_ID, COLUMN_MESSAGE, COLUMN_TIMESTAMP},
+                COLUMN_CONVERSATION_ID + " = ?",
+                new String[]{conversationId},
+                null,
+                null,
+                COLUMN_TIMESTAMP + " DESC",
+                String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                Date date = new Date(cursor.getLong(4));
+                chatMessages.add(new ChatMessage(
+                        cursor.getString(0),
+                        cursor.getString(1),
+                        cursor.getString(2),
+                        cursor.getString(3),
+                        formatter.apply(date),
+                        date
+                ));
+            }
+        }
+
+        Collections.reverse(chatMessages);
+        return chatMessages;
+    }
+}
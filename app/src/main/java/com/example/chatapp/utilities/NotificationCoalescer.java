@@ -0,0 +1,150 @@
+package com.example.chatapp.utilities;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A class which groups incoming items by key, such as messages by conversation, and posts one
+ * notification per key for each short window instead of one per item. Posts for the same key
+ * are also spaced at least a minimum interval apart, so a long burst redraws its notification
+ * a few times rather than on every item.
+ * @param <T> The type of the grouped items
+ */
+public class NotificationCoalescer<T> {
+
+    /**
+     * Interface for posting or updating the notification of one key
+     * @param <T> The type of the grouped items
+     */
+    public interface Poster<T> {
+
+        /**
+         * Posts the key's notification, replacing the one posted before
+         * @param key The key the items were grouped by
+         * @param items The newest items, oldest first
+         * @param count How many items arrived since the key was last cleared
+         */
+        void post(String key, List<T> items, int count);
+    }
+
+
+    /**
+     * The items of one key and when its notification was last posted
+     * @param <T> The type of the grouped items
+     */
+    private static class Group<T> {
+        final List<T> items = new ArrayList<>();
+        int count = 0;
+        boolean isPostScheduled = false;
+        boolean hasPosted = false;
+        long lastPostedAt;
+    }
+
+
+    private final ScheduledExecutorService scheduler;
+    private final long windowMillis;
+    private final long minIntervalMillis;
+    private final int maxItems;
+    private final Poster<T> poster;
+
+    private final Map<String, Group<T>> groups = new HashMap<>();
+
+
+    /**
+     * Constructor
+     * @param scheduler The executor which runs the delayed posts
+     * @param windowMillis How long to wait for more items after the first one of a key
+     * @param minIntervalMillis The least time between two posts for the same key
+     * @param maxItems The most items kept per key, older ones are dropped but still counted
+     * @param poster Posts the notifications
+     */
+    public NotificationCoalescer(ScheduledExecutorService scheduler, long windowMillis, long minIntervalMillis,
+                                 int maxItems, Poster<T> poster) {
+        this.scheduler = scheduler;
+        this.windowMillis = windowMillis;
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxItems = maxItems;
+        this.poster = poster;
+    }
+
+
+    /**
+     * Adds an item, scheduling a post for its key if one isn't already scheduled
+     * @param key The key to group the item by
+     * @param item The item
+     */
+    public synchronized void add(String key, T item) {
+        Group<T> group = groups.get(key);
+        if (group == null) {
+            group = new Group<>();
+            groups.put(key, group);
+        }
+
+        group.items.add(item);
+        if (group.items.size() > maxItems) {
+            group.items.remove(0);
+        }
+        group.count++;
+
+        if (!group.isPostScheduled) {
+            long delay = windowMillis;
+            if (group.hasPosted) {
+                delay = Math.max(delay, group.lastPostedAt + minIntervalMillis - now());
+            }
+
+            Group<T> scheduled = group;
+            group.isPostScheduled = true;
+            try {
+                scheduler.schedule(() -> post(key, scheduled), delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                group.isPostScheduled = false;
+            }
+        }
+    }
+
+
+    /**
+     * Forgets a key's items and cancels its scheduled post, for when the user has seen them
+     * @param key The key to clear
+     */
+    public synchronized void clear(String key) {
+        groups.remove(key);
+    }
+
+
+    /**
+     * Posts a key's notification, unless the key was cleared since the post was scheduled
+     * @param key The key to post
+     * @param group The group the post was scheduled for
+     */
+    private void post(String key, Group<T> group) {
+        List<T> items;
+        int count;
+        synchronized (this) {
+            if (groups.get(key) != group) {
+                return;
+            }
+
+            group.isPostScheduled = false;
+            group.hasPosted = true;
+            group.lastPostedAt = now();
+            items = new ArrayList<>(group.items);
+            count = group.count;
+        }
+        poster.post(key, items, count);
+    }
+
+
+    /**
+     * Returns a monotonic time for spacing posts
+     * @return The time in milliseconds
+     */
+    private static long now() {
+        return System.nanoTime() / 1_000_000;
+    }
+}
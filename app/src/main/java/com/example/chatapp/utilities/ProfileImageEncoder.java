@@ -0,0 +1,177 @@
+package com.example.chatapp.utilities;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.os.Build;
+import android.util.Base64;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Turns a picked photo into a small encoded profile image without ever holding the full size
+ * photo in memory. The photo's bounds are read first, it is decoded at the smallest power of two
+ * size which still covers the target width, turned upright from its EXIF orientation, scaled to
+ * the target width and compressed to WebP within a byte budget. Runs on a background thread.
+ */
+public class ProfileImageEncoder {
+
+    // quality is lowered in these steps until the image fits in the byte budget
+    private static final int QUALITY_STEP = 10;
+    private static final int MIN_QUALITY = 10;
+
+    private final int width;
+    private final int quality;
+    private final int maxBytes;
+
+
+    /**
+     * Opens a new stream over the photo, which is read more than once
+     */
+    public interface StreamOpener {
+        InputStream open() throws IOException;
+    }
+
+
+    /**
+     * Constructor
+     * @param width The width of the encoded image in pixels
+     * @param quality The WebP quality to try first, from 0 to 100
+     * @param maxBytes The most bytes the compressed image may take
+     */
+    public ProfileImageEncoder(int width, int quality, int maxBytes) {
+        this.width = width;
+        this.quality = quality;
+        this.maxBytes = maxBytes;
+    }
+
+
+    /**
+     * Decodes a photo at the target width, upright
+     * @param opener Opens the photo
+     * @return The decoded image, or null if the photo couldn't be decoded
+     * @throws IOException If the photo couldn't be read
+     */
+    public Bitmap decode(StreamOpener opener) throws IOException {
+        Bitmap sampled = decodeSampled(opener);
+        if (sampled == null) {
+            return null;
+        }
+
+        int rotation;
+        try (InputStream inputStream = opener.open()) {
+            rotation = getRotation(new ExifInterface(inputStream).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL));
+        }
+
+        // scale and rotate in one pass so only one more bitmap is allocated
+        boolean isSideways = rotation == 90 || rotation == 270;
+        int uprightWidth = isSideways ? sampled.getHeight() : sampled.getWidth();
+        float scale = Math.min(1f, (float) width / uprightWidth);
+
+        Matrix matrix = new Matrix();
+        matrix.postScale(scale, scale);
+        matrix.postRotate(rotation);
+        if (scale == 1f && rotation == 0) {
+            return sampled;
+        }
+
+        Bitmap upright = Bitmap.createBitmap(sampled, 0, 0, sampled.getWidth(), sampled.getHeight(), matrix, true);
+        if (upright != sampled) {
+            sampled.recycle();
+        }
+        return upright;
+    }
+
+
+    /**
+     * Encodes an image as Base64 WebP within the byte budget
+     * @param bitmap The image
+     * @return The image stored as a Base64 String
+     */
+    public String encode(Bitmap bitmap) {
+        return Base64.encodeToString(compress(bitmap), Base64.DEFAULT);
+    }
+
+
+    /**
+     * Compresses an image to WebP, lowering the quality until it fits in the byte budget
+     * @param bitmap The image
+     * @return The compressed image
+     */
+    byte[] compress(Bitmap bitmap) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        int currentQuality = quality;
+        while (true) {
+            outputStream.reset();
+            bitmap.compress(getFormat(), currentQuality, outputStream);
+            if (outputStream.size() <= maxBytes || currentQuality <= MIN_QUALITY) {
+                return outputStream.toByteArray();
+            }
+            currentQuality = Math.max(currentQuality - QUALITY_STEP, MIN_QUALITY);
+        }
+    }
+
+
+    /**
+     * Decodes a photo at the smallest power of two size which still covers the target width
+     * @param opener Opens the photo
+     * @return The decoded image, or null if the photo couldn't be decoded
+     * @throws IOException If the photo couldn't be read
+     */
+    Bitmap decodeSampled(StreamOpener opener) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream inputStream = opener.open()) {
+            BitmapFactory.decodeStream(inputStream, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        // the short side becomes the width when the photo is turned upright, so sample by the
+        // short side to be safe either way
+        int shortSide = Math.min(options.outWidth, options.outHeight);
+        options.inSampleSize = ImageLoader.calculateInSampleSize(shortSide, shortSide, width, width);
+        options.inJustDecodeBounds = false;
+        try (InputStream inputStream = opener.open()) {
+            return BitmapFactory.decodeStream(inputStream, null, options);
+        }
+    }
+
+
+    /**
+     * Returns how many degrees to turn an image clockwise to make it upright. Mirrored
+     * orientations, which cameras don't write, are left as they are.
+     * @param orientation The EXIF orientation
+     * @return The rotation in degrees
+     */
+    static int getRotation(int orientation) {
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                return 90;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                return 180;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                return 270;
+            default:
+                return 0;
+        }
+    }
+
+
+    /**
+     * Returns the lossy WebP format of the running platform
+     * @return The compress format
+     */
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat getFormat() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return Bitmap.CompressFormat.WEBP_LOSSY;
+        }
+        return Bitmap.CompressFormat.WEBP;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.chatapp.utilities;
+
+import com.example.chatapp.models.ChatMessage;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * A class which reads chat messages out of data push payloads. A chat push carries the same
+ * fields as a message entry, with the send time in milliseconds since the epoch:
+ * {"id": ..., "senderId": ..., "receiverId": ..., "message": ..., "timestamp": "1700000000000"}
+ */
+public class PushMessages {
+
+    /**
+     * Returns the chat message carried by a data payload
+     * @param data The push's data payload
+     * @return The message, or null if the payload isn't a complete chat message
+     */
+    public static ChatMessage toChatMessage(Map<String, String> data) {
+        String id = data.get(Constants.KEY_MESSAGE_ID);
+        String senderId = data.get(Constants.KEY_SENDER_ID);
+        String receiverId = data.get(Constants.KEY_RECEIVER_ID);
+        String message = data.get(Constants.KEY_MESSAGE);
+        String timestamp = data.get(Constants.KEY_TIMESTAMP);
+        if (id == null || senderId == null || receiverId == null || message == null || timestamp == null) {
+            return null;
+        }
+
+        try {
+            return new ChatMessage(id, senderId, receiverId, message, null, new Date(Long.parseLong(timestamp)));
+        } catch (NumberFormatException exception) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Saves the chat message carried by a data payload, so a conversation synced before opens
+     * with it before the catch-up query answers. The message leaves the conversation's sync
+     * point alone: messages before it may not have been read yet, and its send time comes from
+     * the sender's clock. Messages for anyone but the signed in user are ignored.
+     * Does disk IO and shouldn't be called on the main thread.
+     * @param data The push's data payload
+     * @param userId The signed in user's ID, or null if nobody is signed in
+     * @param messageStore The store to save the message in
+     * @return true if a message was saved, otherwise false
+     */
+    public static boolean cacheMessage(Map<String, String> data, String userId, MessageStore messageStore) {
+        ChatMessage chatMessage = toChatMessage(data);
+        if (chatMessage == null || userId == null || !userId.equals(chatMessage.receiverId)) {
+            return false;
+        }
+
+        messageStore.putMessages(
+                ConversationHelper.getConversationId(chatMessage.senderId, chatMessage.receiverId),
+                Collections.singletonList(chatMessage)
+        );
+        return true;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.chatapp.utilities;
+
+import com.example.chatapp.models.ChatMessage;
+import com.example.chatapp.models.RecentConversation;
+import com.example.chatapp.models.User;
+import com.google.firebase.Timestamp;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A class which builds the entries of the per-user conversation index. Each user has one entry
+ * per conversation, keyed by the other user's ID, holding that user's name and image hash and
+ * the newest message, so the home screen can list conversations without reading the directory
+ * or the messages.
+ */
+public class RecentConversations {
+
+    /**
+     * Returns the index entry for a conversation after a message was sent in it
+     * @param otherUser The other user in the conversation, from the entry owner's side
+     * @param lastMessage The newest message
+     * @return The entry, without its unread count
+     */
+    public static Map<String, Object> toEntry(User otherUser, ChatMessage lastMessage) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put(Constants.KEY_FIRST_NAME, otherUser.firstName);
+        entry.put(Constants.KEY_LAST_NAME, otherUser.lastName);
+        entry.put(Constants.KEY_IMAGE_HASH, otherUser.imageHash);
+        entry.put(Constants.KEY_LAST_MESSAGE, lastMessage.message);
+        entry.put(Constants.KEY_SENDER_ID, lastMessage.senderId);
+        entry.put(Constants.KEY_TIMESTAMP, lastMessage.dateObject);
+        return entry;
+    }
+
+
+    /**
+     * Unpacks an index entry
+     * @param otherUserId The entry's document ID, which is the other user's ID
+     * @param data The entry document's data
+     * @return The recent conversation
+     */
+    public static RecentConversation toRecentConversation(String otherUserId, Map<String, Object> data) {
+        User user = new User();
+        user.id = otherUserId;
+        user.firstName = (String) data.get(Constants.KEY_FIRST_NAME);
+        user.lastName = (String) data.get(Constants.KEY_LAST_NAME);
+        user.imageHash = (String) data.get(Constants.KEY_IMAGE_HASH);
+
+        Object timestamp = data.get(Constants.KEY_TIMESTAMP);
+        Date date = timestamp instanceof Timestamp ? ((Timestamp) timestamp).toDate() : (Date) timestamp;
+        Object unreadCount = data.get(Constants.KEY_UNREAD_COUNT);
+        return new RecentConversation(
+                user,
+                (String) data.get(Constants.KEY_LAST_MESSAGE),
+                (String) data.get(Constants.KEY_SENDER_ID),
+                date,
+                unreadCount instanceof Number ? ((Number) unreadCount).longValue() : 0
+        );
+    }
+}
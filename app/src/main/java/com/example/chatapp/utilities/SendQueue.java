@@ -0,0 +1,100 @@
+package com.example.chatapp.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A queue which collects outgoing items for a short window and then hands them over to be
+ * written together, so a burst of sends costs one write instead of one per item
+ * @param <T> The type of the queued items
+ */
+public class SendQueue<T> {
+
+    /**
+     * Interface for writing a batch of queued items
+     * @param <T> The type of the queued items
+     */
+    public interface BatchWriter<T> {
+
+        /**
+         * Writes the items in one batch
+         * @param items The items to write, in the order they were queued
+         */
+        void write(List<T> items);
+    }
+
+
+    private final ScheduledExecutorService scheduler;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final BatchWriter<T> batchWriter;
+
+    private final List<T> pending = new ArrayList<>();
+    private boolean isFlushScheduled = false;
+
+
+    /**
+     * Constructor
+     * @param scheduler The executor which runs the delayed flushes
+     * @param windowMillis How long to wait for more items after the first one is queued
+     * @param maxBatchSize The most items written in one batch
+     * @param batchWriter Writes the batches
+     */
+    public SendQueue(ScheduledExecutorService scheduler, long windowMillis, int maxBatchSize, BatchWriter<T> batchWriter) {
+        this.scheduler = scheduler;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.batchWriter = batchWriter;
+    }
+
+
+    /**
+     * Queues an item, starting the coalescing window if one isn't already running
+     * @param item The item to send
+     */
+    public synchronized void enqueue(T item) {
+        pending.add(item);
+
+        if (!isFlushScheduled) {
+            isFlushScheduled = true;
+            try {
+                scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                isFlushScheduled = false;
+            }
+        }
+    }
+
+
+    /**
+     * Writes everything that is queued right away, in batches of at most maxBatchSize items
+     */
+    public void flush() {
+        while (true) {
+            List<T> batch;
+            synchronized (this) {
+                isFlushScheduled = false;
+                if (pending.isEmpty()) {
+                    return;
+                }
+
+                List<T> next = pending.subList(0, Math.min(maxBatchSize, pending.size()));
+                batch = new ArrayList<>(next);
+                next.clear();
+            }
+            batchWriter.write(batch);
+        }
+    }
+
+
+    /**
+     * Returns how many items are waiting to be written
+     * @return The number of queued items
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.chatapp.utilities;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.example.chatapp.models.Session;
+
+import java.util.function.Consumer;
+
+
+/**
+ * A class which keeps the session in memory and persists every change to it in one
+ * SharedPreferences write. The profile image is never stored here, it is loaded by its hash,
+ * so the preferences file stays small to parse.
+ */
+public class SessionManager {
+
+    private static SessionManager instance;
+
+    private final SharedPreferences sharedPreferences;
+    private Session session;
+
+
+    /**
+     * Returns the app's session manager
+     * @param context Any context, the application context is used
+     * @return The session manager
+     */
+    public static synchronized SessionManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new SessionManager(context.getApplicationContext()
+                    .getSharedPreferences(Constants.KEY_PREFERENCE_NAME, Context.MODE_PRIVATE));
+        }
+        return instance;
+    }
+
+
+    /**
+     * Constructor
+     * @param sharedPreferences The preferences the session is persisted in
+     */
+    SessionManager(SharedPreferences sharedPreferences) {
+        this.sharedPreferences = sharedPreferences;
+    }
+
+
+    /**
+     * Returns a copy of the current session, read from disk on first use
+     * @return The session
+     */
+    public synchronized Session getSession() {
+        return new Session(load());
+    }
+
+
+    /**
+     * Changes the session and persists all the changes in one write
+     * @param editor Changes the session it is given
+     */
+    public synchronized void update(Consumer<Session> editor) {
+        Session changed = new Session(load());
+        editor.accept(changed);
+        session = changed;
+
+        sharedPreferences.edit()
+                .putBoolean(Constants.KEY_IS_SIGNED_IN, changed.isSignedIn)
+                .putString(Constants.KEY_USER_ID, changed.userId)
+                .putString(Constants.KEY_FIRST_NAME, changed.firstName)
+                .putString(Constants.KEY_LAST_NAME, changed.lastName)
+                .putString(Constants.KEY_IMAGE_HASH, changed.imageHash)
+                .putString(Constants.KEY_FCM_TOKEN, changed.token)
+                .putBoolean(Constants.KEY_IS_CHAT_MIGRATED, changed.isChatMigrated)
+                .putBoolean(Constants.KEY_IS_IMAGE_MIGRATED, changed.isImageMigrated)
+                .remove(Constants.KEY_IMAGE)
+                .apply();
+    }
+
+
+    /**
+     * Signs out by forgetting the whole session
+     */
+    public synchronized void clear() {
+        session = new Session();
+        sharedPreferences.edit().clear().apply();
+    }
+
+
+    /**
+     * Returns the in-memory session, reading it from disk the first time
+     * @return The session
+     */
+    private Session load() {
+        if (session == null) {
+            session = new Session();
+            session.isSignedIn = sharedPreferences.getBoolean(Constants.KEY_IS_SIGNED_IN, false);
+            session.userId = sharedPreferences.getString(Constants.KEY_USER_ID, null);
+            session.firstName = sharedPreferences.getString(Constants.KEY_FIRST_NAME, null);
+            session.lastName = sharedPreferences.getString(Constants.KEY_LAST_NAME, null);
+            session.imageHash = sharedPreferences.getString(Constants.KEY_IMAGE_HASH, null);
+            session.token = sharedPreferences.getString(Constants.KEY_FCM_TOKEN, null);
+            session.isChatMigrated = sharedPreferences.getBoolean(Constants.KEY_IS_CHAT_MIGRATED, false);
+            session.isImageMigrated = sharedPreferences.getBoolean(Constants.KEY_IS_IMAGE_MIGRATED, false);
+
+            if (sharedPreferences.contains(Constants.KEY_IMAGE)) {
+                // older versions kept the encoded image here
+                sharedPreferences.edit().remove(Constants.KEY_IMAGE).apply();
+            }
+        }
+        return session;
+    }
+}
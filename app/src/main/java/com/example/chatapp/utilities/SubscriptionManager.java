@@ -0,0 +1,120 @@
+package com.example.chatapp.utilities;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class which keeps a screen's listeners attached only while it is visible. Listeners are
+ * added as subscribers, which are asked for a fresh registration on every start, so a
+ * subscriber can resume from what it last saw. Registrations are removed on stop and
+ * subscribers are dropped on destroy. Observe the screen's lifecycle with it.
+ */
+public class SubscriptionManager implements DefaultLifecycleObserver {
+
+    /**
+     * Interface for attaching a listener
+     */
+    public interface Subscriber {
+
+        /**
+         * Attaches the listener
+         * @return The registration which detaches it
+         */
+        ListenerRegistration subscribe();
+    }
+
+
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private final List<ListenerRegistration> registrations = new ArrayList<>();
+    private boolean isStarted = false;
+    private boolean isClosed = false;
+
+
+    /**
+     * Adds a subscriber, attaching it right away if the screen is visible
+     * @param subscriber The subscriber
+     */
+    public synchronized void add(Subscriber subscriber) {
+        if (isClosed) {
+            return;
+        }
+
+        subscribers.add(subscriber);
+        if (isStarted) {
+            registrations.add(subscriber.subscribe());
+        }
+    }
+
+
+    /**
+     * Attaches every subscriber
+     */
+    public synchronized void start() {
+        if (isStarted || isClosed) {
+            return;
+        }
+
+        isStarted = true;
+        for (Subscriber subscriber : subscribers) {
+            registrations.add(subscriber.subscribe());
+        }
+    }
+
+
+    /**
+     * Detaches every subscriber, keeping them for the next start
+     */
+    public synchronized void stop() {
+        isStarted = false;
+        for (ListenerRegistration registration : registrations) {
+            registration.remove();
+        }
+        registrations.clear();
+    }
+
+
+    /**
+     * Detaches and drops every subscriber, later ones are ignored
+     */
+    public synchronized void close() {
+        stop();
+        subscribers.clear();
+        isClosed = true;
+    }
+
+
+    /**
+     * Attaches the subscribers when the screen becomes visible
+     * @param owner The screen
+     */
+    @Override
+    public void onStart(@NonNull LifecycleOwner owner) {
+        start();
+    }
+
+
+    /**
+     * Detaches the subscribers when the screen is no longer visible
+     * @param owner The screen
+     */
+    @Override
+    public void onStop(@NonNull LifecycleOwner owner) {
+        stop();
+    }
+
+
+    /**
+     * Drops the subscribers when the screen is destroyed
+     * @param owner The screen
+     */
+    @Override
+    public void onDestroy(@NonNull LifecycleOwner owner) {
+        close();
+    }
+}
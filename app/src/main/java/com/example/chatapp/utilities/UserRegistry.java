@@ -0,0 +1,48 @@
+package com.example.chatapp.utilities;
+
+import com.example.chatapp.models.User;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A process-wide registry of users keyed by ID, so screens can pass a user ID around instead
+ * of the whole user. It is empty again after the process dies, so readers need a fallback.
+ */
+public class UserRegistry {
+
+    private static UserRegistry instance;
+
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+
+
+    /**
+     * Returns the app's user registry
+     * @return The user registry
+     */
+    public static synchronized UserRegistry getInstance() {
+        if (instance == null) {
+            instance = new UserRegistry();
+        }
+        return instance;
+    }
+
+
+    /**
+     * Adds a user, replacing any user with the same ID
+     * @param user The user
+     */
+    public void put(User user) {
+        users.put(user.id, user);
+    }
+
+
+    /**
+     * Returns a registered user
+     * @param id The user's ID
+     * @return The user, or null if no user with that ID is registered
+     */
+    public User get(String id) {
+        return id == null ? null : users.get(id);
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.chatapp.utilities;
+
+import com.example.chatapp.models.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An in-memory search index over users' first names, last names and emails. Every word of a
+ * query must match one of a user's fields: words shorter than three letters match the start
+ * of a field, longer words match anywhere in it. Users are indexed as they are added, and
+ * results keep the order users were added in. A changed user replaces its old entry and moves
+ * to the end, so clear and rebuild the index to restore an order. Not thread safe, so keep it
+ * on one thread.
+ */
+public class UserSearchIndex {
+
+    private static final int GRAM_LENGTH = 3;
+    // marks a short gram which only matches the start of a field
+    private static final char PREFIX_MARK = '^';
+
+    private final List<User> users = new ArrayList<>();
+    private final List<String[]> userFields = new ArrayList<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+    private int removedCount = 0;
+    private final Map<String, Postings> index = new HashMap<>();
+
+
+    /**
+     * Adds a user to the index. A user with the same ID and details is left as it is, one with
+     * changed details is replaced.
+     * @param user The user
+     */
+    public void add(User user) {
+        Integer oldPosition = positions.get(user.id);
+        if (oldPosition != null) {
+            if (user.equals(users.get(oldPosition))) {
+                return;
+            }
+            // its grams stay in the postings lists, so leave an empty slot for search to skip
+            users.set(oldPosition, null);
+            userFields.set(oldPosition, null);
+            removedCount++;
+        }
+
+        int position = users.size();
+        positions.put(user.id, position);
+        String[] fields = {normalize(user.firstName), normalize(user.lastName), normalize(user.email)};
+        users.add(user);
+        userFields.add(fields);
+
+        for (String field : fields) {
+            for (int length = 1; length < GRAM_LENGTH && length <= field.length(); length++) {
+                addPosting(PREFIX_MARK + field.substring(0, length), position);
+            }
+            for (int start = 0; start + GRAM_LENGTH <= field.length(); start++) {
+                addPosting(field.substring(start, start + GRAM_LENGTH), position);
+            }
+        }
+    }
+
+
+    /**
+     * Adds users to the index
+     * @param users The users
+     */
+    public void addAll(Collection<User> users) {
+        for (User user : users) {
+            add(user);
+        }
+    }
+
+
+    /**
+     * Removes every user, so the index can be rebuilt in a new order
+     */
+    public void clear() {
+        users.clear();
+        userFields.clear();
+        positions.clear();
+        removedCount = 0;
+        index.clear();
+    }
+
+
+    /**
+     * Returns how many users are indexed
+     * @return The number of users
+     */
+    public int size() {
+        return users.size() - removedCount;
+    }
+
+
+    /**
+     * Finds the users matching a query
+     * @param query The query, as typed
+     * @return The matching users in the order they were added, or every user for a blank query
+     */
+    public List<User> search(String query) {
+        String[] words = normalize(query).trim().split("\\s+");
+        if (words.length == 1 && words[0].isEmpty()) {
+            List<User> everyone = new ArrayList<>(size());
+            for (User user : users) {
+                if (user != null) {
+                    everyone.add(user);
+                }
+            }
+            return everyone;
+        }
+
+        List<Postings> lists = new ArrayList<>();
+        for (String word : words) {
+            for (String gram : getGrams(word)) {
+                Postings postings = index.get(gram);
+                if (postings == null) {
+                    return new ArrayList<>();
+                }
+                lists.add(postings);
+            }
+        }
+
+        // intersect the shortest lists first so the candidates shrink as fast as possible
+        lists.sort(Comparator.comparingInt(postings -> postings.size));
+        int[] candidates = Arrays.copyOf(lists.get(0).positions, lists.get(0).size);
+        int candidateCount = candidates.length;
+        for (int i = 1; i < lists.size() && candidateCount > 0; i++) {
+            candidateCount = intersect(candidates, candidateCount, lists.get(i));
+        }
+
+        // grams can all be present without the word itself being present
+        List<User> results = new ArrayList<>();
+        for (int i = 0; i < candidateCount; i++) {
+            String[] fields = userFields.get(candidates[i]);
+            if (fields != null && matchesAll(fields, words)) {
+                results.add(users.get(candidates[i]));
+            }
+        }
+        return results;
+    }
+
+
+    /**
+     * Returns the grams to look up for a query word
+     * @param word The word
+     * @return The word's prefix gram if it is short, otherwise its grams
+     */
+    private static List<String> getGrams(String word) {
+        List<String> grams = new ArrayList<>();
+        if (word.length() < GRAM_LENGTH) {
+            grams.add(PREFIX_MARK + word);
+        } else {
+            for (int start = 0; start + GRAM_LENGTH <= word.length(); start++) {
+                grams.add(word.substring(start, start + GRAM_LENGTH));
+            }
+        }
+        return grams;
+    }
+
+
+    /**
+     * Checks every query word against a user's fields
+     * @param fields The user's normalized fields
+     * @param words The query words
+     * @return true if every word matches one of the fields, otherwise false
+     */
+    private static boolean matchesAll(String[] fields, String[] words) {
+        for (String word : words) {
+            boolean matches = false;
+            for (String field : fields) {
+                if (word.length() < GRAM_LENGTH ? field.startsWith(word) : field.contains(word)) {
+                    matches = true;
+                    break;
+                }
+            }
+            if (!matches) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Keeps only the candidates which are also in a postings list
+     * @param candidates The sorted candidate positions, filtered in place
+     * @param count How many candidates there are
+     * @param postings The postings list
+     * @return How many candidates are left
+     */
+    private static int intersect(int[] candidates, int count, Postings postings) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < count && j < postings.size; i++) {
+            while (j < postings.size && postings.positions[j] < candidates[i]) {
+                j++;
+            }
+            if (j < postings.size && postings.positions[j] == candidates[i]) {
+                candidates[kept++] = candidates[i];
+            }
+        }
+        return kept;
+    }
+
+
+    /**
+     * Records that a user has a gram
+     * @param gram The gram
+     * @param position The user's position
+     */
+    private void addPosting(String gram, int position) {
+        Postings postings = index.get(gram);
+        if (postings == null) {
+            postings = new Postings();
+            index.put(gram, postings);
+        }
+        postings.add(position);
+    }
+
+
+    /**
+     * Lower-cases a field or query so matching ignores case
+     * @param text The text, which may be null
+     * @return The normalized text
+     */
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+
+    /**
+     * The sorted positions of the users which have one gram
+     */
+    private static class Postings {
+
+        int[] positions = new int[4];
+        int size = 0;
+
+
+        /**
+         * Adds a position. Positions only ever grow, so a repeat is always the last one.
+         * @param position The user's position
+         */
+        void add(int position) {
+            if (size > 0 && positions[size - 1] == position) {
+                return;
+            }
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.chatapp.utilities;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.example.chatapp.models.User;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class which keeps the user directory on disk, so it can be shown before the network
+ * answers, along with the time it was last brought up to date. Calls do disk IO and shouldn't
+ * be made on the main thread.
+ */
+public class UserStore extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "users.db";
+    private static final int DATABASE_VERSION = 1;
+
+    static final String TABLE_USERS = "users";
+    private static final String COLUMN_ID = "id";
+    private static final String COLUMN_FIRST_NAME = "firstName";
+    private static final String COLUMN_LAST_NAME = "lastName";
+    private static final String COLUMN_EMAIL = "email";
+    private static final String COLUMN_IMAGE = "image";
+    private static final String COLUMN_IMAGE_HASH = "imageHash";
+    private static final String COLUMN_TOKEN = "token";
+
+    private static final String TABLE_SYNC = "sync";
+    private static final String COLUMN_NAME = "name";
+    private static final String COLUMN_TIME = "time";
+    private static final String SYNC_DIRECTORY = "directory";
+
+    private static UserStore instance;
+
+
+    /**
+     * Returns the app's user store
+     * @param context Any context, the application context is used
+     * @return The user store
+     */
+    public static synchronized UserStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new UserStore(context.getApplicationContext(), DATABASE_NAME);
+        }
+        return instance;
+    }
+
+
+    /**
+     * Constructor
+     * @param context Context used to open the database
+     * @param name The database file name, or null for an in-memory database
+     */
+    UserStore(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+
+    /**
+     * Creates the user table, its first name index and the sync table
+     * @param db The database.
+     */
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_USERS + " ("
+                + COLUMN_ID + " TEXT PRIMARY KEY, "
+                + COLUMN_FIRST_NAME + " TEXT, "
+                + COLUMN_LAST_NAME + " TEXT, "
+                + COLUMN_EMAIL + " TEXT, "
+                + COLUMN_IMAGE + " TEXT, "
+                + COLUMN_IMAGE_HASH + " TEXT, "
+                + COLUMN_TOKEN + " TEXT)");
+        db.execSQL("CREATE INDEX index_users_first_name ON " + TABLE_USERS + " (" + COLUMN_FIRST_NAME + ")");
+        db.execSQL("CREATE TABLE " + TABLE_SYNC + " ("
+                + COLUMN_NAME + " TEXT PRIMARY KEY, "
+                + COLUMN_TIME + " INTEGER NOT NULL)");
+    }
+
+
+    /**
+     * Drops the cached directory when the schema changes, it can be fetched again
+     * @param db The database.
+     * @param oldVersion The old database version.
+     * @param newVersion The new database version.
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SYNC);
+        onCreate(db);
+    }
+
+
+    /**
+     * Saves users, replacing any stored user with the same ID
+     * @param users The users to save
+     */
+    public void putUsers(List<User> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (User user : users) {
+                values.put(COLUMN_ID, user.id);
+                values.put(COLUMN_FIRST_NAME, user.firstName);
+                values.put(COLUMN_LAST_NAME, user.lastName);
+                values.put(COLUMN_EMAIL, user.email);
+                values.put(COLUMN_IMAGE, user.image);
+                values.put(COLUMN_IMAGE_HASH, user.imageHash);
+                values.put(COLUMN_TOKEN, user.token);
+                db.insertWithOnConflict(TABLE_USERS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+
+    /**
+     * Returns every stored user except one, ordered by first name like the directory query
+     * @param excludedId The ID of the user to leave out, usually the signed in user
+     * @return The users
+     */
+    public List<User> getUsers(String excludedId) {
+        List<User> users = new ArrayList<>();
+
+        try (Cursor cursor = getReadableDatabase().query(
+                TABLE_USERS,
+                new String[]{COLUMN_ID, COLUMN_FIRST_NAME, COLUMN_LAST_NAME, COLUMN_EMAIL,
+                        COLUMN_IMAGE, COLUMN_IMAGE_HASH, COLUMN_TOKEN},
+                COLUMN_ID + " != ?",
+                new String[]{excludedId},
+                null,
+                null,
+                COLUMN_FIRST_NAME + ", " + COLUMN_ID)) {
+            while (cursor.moveToNext()) {
+                User user = new User();
+                user.id = cursor.getString(0);
+                user.firstName = cursor.getString(1);
+                user.lastName = cursor.getString(2);
+                user.email = cursor.getString(3);
+                user.image = cursor.getString(4);
+                user.imageHash = cursor.getString(5);
+                user.token = cursor.getString(6);
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+
+    /**
+     * Returns when the whole stored directory was last known to be up to date
+     * @return The time in milliseconds, or 0 if the directory was never fully stored
+     */
+    public long getSyncedAt() {
+        try (Cursor cursor = getReadableDatabase().query(
+                TABLE_SYNC,
+                new String[]{COLUMN_TIME},
+                COLUMN_NAME + " = ?",
+                new String[]{SYNC_DIRECTORY},
+                null,
+                null,
+                null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+
+    /**
+     * Records when the whole stored directory was last known to be up to date
+     * @param time The time in milliseconds
+     */
+    public void setSyncedAt(long time) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_NAME, SYNC_DIRECTORY);
+        values.put(COLUMN_TIME, time);
+        getWritableDatabase().insertWithOnConflict(TABLE_SYNC, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.chatapp.adapters;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link KeyedListAdapter}
+ */
+public class KeyedListAdapterTest {
+
+    @Test
+    public void hashKey_sameKey_sameId() {
+        assertEquals(KeyedListAdapter.hashKey("aBc123"), KeyedListAdapter.hashKey("aBc123"));
+        assertNotEquals(KeyedListAdapter.hashKey("aBc123"), KeyedListAdapter.hashKey("aBc124"));
+    }
+
+    @Test
+    public void hashKey_manyDocumentIds_noCollisions() {
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(ids.add(KeyedListAdapter.hashKey(UUID.randomUUID().toString())));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.chatapp.firebase;
+
+import com.example.chatapp.utilities.FirestoreMetrics;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link InstrumentedFirestore}, against a fake backend whose calls finish
+ * when the test completes them
+ */
+public class InstrumentedFirestoreTest {
+
+    /**
+     * A result of the fake backend
+     */
+    private static class FakeResult {
+        final int documents;
+        final boolean isFromCache;
+
+        FakeResult(int documents, boolean isFromCache) {
+            this.documents = documents;
+            this.isFromCache = isFromCache;
+        }
+    }
+
+    private final FirestoreMetrics metrics = FirestoreMetrics.getInstance();
+    private final AtomicLong clock = new AtomicLong(1000);
+    private InstrumentedFirestore firestore;
+
+    @Before
+    public void setUp() {
+        metrics.reset();
+        firestore = new InstrumentedFirestore("Screen", metrics, clock::get);
+    }
+
+    private Task<FakeResult> read(String name, TaskCompletionSource<FakeResult> backend) {
+        return firestore.trackRead(name, backend.getTask(), result -> result.documents, result -> result.isFromCache);
+    }
+
+    @Test
+    public void trackRead_recordsDocumentsAndLatencyWhenFinished() {
+        TaskCompletionSource<FakeResult> backend = new TaskCompletionSource<>();
+        Task<FakeResult> task = read("users", backend);
+        assertTrue(metrics.getStats().isEmpty());
+
+        clock.addAndGet(120);
+        backend.setResult(new FakeResult(25, false));
+
+        FirestoreMetrics.Stats stats = metrics.getStats().get(0);
+        assertEquals("Screen", stats.screen);
+        assertEquals("users", stats.query);
+        assertEquals(1, stats.calls);
+        assertEquals(25, stats.reads);
+        assertEquals(120, stats.latency.getMaxMillis());
+        assertSame(backend.getTask(), task);
+    }
+
+    @Test
+    public void trackRead_emptyResult_billsOneRead() {
+        TaskCompletionSource<FakeResult> backend = new TaskCompletionSource<>();
+        read("users", backend);
+        backend.setResult(new FakeResult(0, false));
+
+        assertEquals(1, metrics.getStats().get(0).reads);
+    }
+
+    @Test
+    public void trackRead_fromCache_countsCachedDocuments() {
+        TaskCompletionSource<FakeResult> backend = new TaskCompletionSource<>();
+        read("users", backend);
+        backend.setResult(new FakeResult(8, true));
+
+        FirestoreMetrics.Stats stats = metrics.getStats().get(0);
+        assertEquals(0, stats.reads);
+        assertEquals(8, stats.cachedDocuments);
+    }
+
+    @Test
+    public void trackRead_failure_recordsError() {
+        TaskCompletionSource<FakeResult> backend = new TaskCompletionSource<>();
+        read("users", backend);
+        clock.addAndGet(3000);
+        backend.setException(new IllegalStateException("offline"));
+
+        FirestoreMetrics.Stats stats = metrics.getStats().get(0);
+        assertEquals(1, stats.errors);
+        assertEquals(0, stats.reads);
+        assertEquals(3000, stats.latency.getMaxMillis());
+    }
+
+    @Test
+    public void trackWrite_recordsWritesPerQuery() {
+        TaskCompletionSource<Void> first = new TaskCompletionSource<>();
+        TaskCompletionSource<Void> second = new TaskCompletionSource<>();
+        firestore.trackWrite("send", first.getTask(), 4);
+        firestore.trackWrite("token", second.getTask(), 1);
+
+        clock.addAndGet(60);
+        first.setResult(null);
+        second.setResult(null);
+
+        assertEquals(2, metrics.getStats().size());
+        assertEquals(4, metrics.getStats().get(0).writes);
+        assertEquals(60, metrics.getStats().get(0).latency.getMaxMillis());
+        assertEquals(5, metrics.getScreenTotals("Screen").writes);
+    }
+
+    @Test
+    public void trackWrite_failure_recordsNoWrites() {
+        TaskCompletionSource<Void> backend = new TaskCompletionSource<>();
+        firestore.trackWrite("send", backend.getTask(), 4);
+        backend.setException(new IllegalStateException("denied"));
+
+        FirestoreMetrics.Stats stats = metrics.getStats().get(0);
+        assertEquals(0, stats.writes);
+        assertEquals(1, stats.errors);
+    }
+
+    @Test
+    public void trackTransaction_recordsReadsAndResultWrites() {
+        TaskCompletionSource<Integer> backend = new TaskCompletionSource<>();
+        firestore.trackTransaction("index", backend.getTask(), 2, writes -> writes);
+        clock.addAndGet(45);
+        backend.setResult(1);
+
+        FirestoreMetrics.Stats stats = metrics.getStats().get(0);
+        assertEquals(2, stats.reads);
+        assertEquals(1, stats.writes);
+        assertEquals(45, stats.latency.getMaxMillis());
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.chatapp.models;
+
+import android.os.Parcel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+
+/**
+ * Robolectric tests for parceling {@link User}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class UserTest {
+
+    private static User user() {
+        User user = new User();
+        user.id = "u1";
+        user.firstName = "Ada";
+        user.lastName = "Lovelace";
+        user.email = "ada@example.com";
+        user.imageHash = "1f";
+        user.token = "token";
+        return user;
+    }
+
+    private static User roundTrip(User user) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            user.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return User.CREATOR.createFromParcel(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Test
+    public void parcel_roundTripKeepsDetails() {
+        User user = user();
+
+        assertEquals(user, roundTrip(user));
+    }
+
+    @Test
+    public void parcel_leavesOutInlineImage() {
+        User user = user();
+        user.image = "a large Base64 image";
+
+        User restored = roundTrip(user);
+        assertNull(restored.image);
+        assertEquals("1f", restored.imageHash);
+    }
+
+    @Test
+    public void parcel_keepsInlineImageWithoutHash() {
+        User user = user();
+        user.imageHash = null;
+        user.image = "a Base64 image";
+
+        User restored = roundTrip(user);
+        assertEquals("a Base64 image", restored.image);
+        assertNull(restored.imageHash);
+    }
+}
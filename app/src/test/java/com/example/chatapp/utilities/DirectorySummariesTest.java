@@ -0,0 +1,125 @@
+package com.example.chatapp.utilities;
+
+import com.example.chatapp.models.User;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link DirectorySummaries}
+ */
+public class DirectorySummariesTest {
+
+    private static final int DIRECTORY_SIZE = 5_000;
+
+    private static Map<String, Object> userDocument(int i) {
+        Map<String, Object> user = new HashMap<>();
+        user.put(Constants.KEY_FIRST_NAME, "First" + (i % 97));
+        user.put(Constants.KEY_LAST_NAME, "Last" + i);
+        user.put(Constants.KEY_EMAIL, "user" + i + "@example.com");
+        user.put(Constants.KEY_PASSWORD, "secret");
+        user.put(Constants.KEY_IMAGE_HASH, Integer.toHexString(i));
+        user.put(Constants.KEY_FCM_TOKEN, "token" + i);
+        return user;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void putEntry(Map<String, Map<String, Object>> summaries, String userId, Map<String, Object> entry) {
+        Map<String, Object> summary = summaries.computeIfAbsent(DirectorySummaries.getSummaryId(userId), id -> {
+            Map<String, Object> data = new HashMap<>();
+            data.put(Constants.KEY_VERSION, 0L);
+            data.put(Constants.KEY_USERS, new HashMap<String, Object>());
+            return data;
+        });
+        summary.put(Constants.KEY_VERSION, (Long) summary.get(Constants.KEY_VERSION) + 1);
+        ((Map<String, Object>) summary.get(Constants.KEY_USERS)).put(userId, entry);
+    }
+
+    @Test
+    public void getSummaryId_isStableAndInRange() {
+        assertEquals(DirectorySummaries.getSummaryId("abc"), DirectorySummaries.getSummaryId("abc"));
+        for (int i = 0; i < 1_000; i++) {
+            String id = DirectorySummaries.getSummaryId("user" + i);
+            int index = Integer.parseInt(id.substring("summary".length()));
+            assertTrue(index >= 0 && index < Constants.DIRECTORY_SUMMARY_COUNT);
+        }
+    }
+
+    @Test
+    public void toEntry_keepsOnlyDirectoryFields() {
+        Map<String, Object> entry = DirectorySummaries.toEntry(userDocument(1));
+
+        assertEquals(4, entry.size());
+        assertEquals("Last1", entry.get(Constants.KEY_LAST_NAME));
+        assertFalse(entry.containsKey(Constants.KEY_PASSWORD));
+        assertFalse(entry.containsKey(Constants.KEY_FCM_TOKEN));
+    }
+
+    @Test
+    public void toUsers_unpacksAndOrdersByFirstName() {
+        Map<String, Map<String, Object>> summaries = new LinkedHashMap<>();
+        Map<String, Object> grace = new HashMap<>();
+        grace.put(Constants.KEY_FIRST_NAME, "Grace");
+        grace.put(Constants.KEY_IMAGE_HASH, "1f");
+        Map<String, Object> ada = new HashMap<>();
+        ada.put(Constants.KEY_FIRST_NAME, "Ada");
+        putEntry(summaries, "g", grace);
+        putEntry(summaries, "a", ada);
+
+        List<User> users = DirectorySummaries.toUsers(new ArrayList<>(summaries.values()));
+
+        assertEquals(2, users.size());
+        assertEquals("a", users.get(0).id);
+        assertEquals("g", users.get(1).id);
+        assertEquals("1f", users.get(1).imageHash);
+    }
+
+    @Test
+    public void toUsers_skipsEmptySummaries() {
+        assertTrue(DirectorySummaries.toUsers(Arrays.asList(null, Collections.emptyMap())).isEmpty());
+    }
+
+    @Test
+    public void summaries_readFewerDocumentsThanOneDocumentPerUser() {
+        // the per-user layout, as the documents the directory query reads
+        Map<String, Map<String, Object>> userDocuments = new LinkedHashMap<>();
+        for (int i = 0; i < DIRECTORY_SIZE; i++) {
+            userDocuments.put("u" + i, userDocument(i));
+        }
+
+        // the same directory maintained as summaries, one update per user
+        Map<String, Map<String, Object>> summaries = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, Object>> document : userDocuments.entrySet()) {
+            putEntry(summaries, document.getKey(), DirectorySummaries.toEntry(document.getValue()));
+        }
+
+        List<User> fromDocuments = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Object>> document : userDocuments.entrySet()) {
+            User user = new User();
+            user.id = document.getKey();
+            user.firstName = (String) document.getValue().get(Constants.KEY_FIRST_NAME);
+            user.lastName = (String) document.getValue().get(Constants.KEY_LAST_NAME);
+            user.email = (String) document.getValue().get(Constants.KEY_EMAIL);
+            user.imageHash = (String) document.getValue().get(Constants.KEY_IMAGE_HASH);
+            fromDocuments.add(user);
+        }
+        fromDocuments.sort((a, b) -> a.firstName.equals(b.firstName)
+                ? a.id.compareTo(b.id)
+                : a.firstName.compareTo(b.firstName));
+
+        List<User> fromSummaries = DirectorySummaries.toUsers(new ArrayList<>(summaries.values()));
+
+        assertEquals(fromDocuments, fromSummaries);
+        assertEquals(DIRECTORY_SIZE, userDocuments.size());
+        assertEquals(Constants.DIRECTORY_SUMMARY_COUNT, summaries.size());
+    }
+}
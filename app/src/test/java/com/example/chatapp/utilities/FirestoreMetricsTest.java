@@ -0,0 +1,140 @@
+package com.example.chatapp.utilities;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link FirestoreMetrics}
+ */
+public class FirestoreMetricsTest {
+
+    @Test
+    public void recordRead_billsAtLeastOneDocument() {
+        FirestoreMetrics metrics = new FirestoreMetrics();
+        metrics.recordRead("Users", "page", 0, false, 40);
+        metrics.recordRead("Users", "page", 20, false, 60);
+
+        FirestoreMetrics.Stats stats = metrics.getStats().get(0);
+        assertEquals(2, stats.calls);
+        assertEquals(21, stats.reads);
+        assertEquals(2, stats.latency.getCount());
+        assertEquals(50, stats.latency.getMeanMillis());
+    }
+
+    @Test
+    public void recordRead_fromCache_isNotBilled() {
+        FirestoreMetrics metrics = new FirestoreMetrics();
+        metrics.recordRead("Users", "page", 20, true, 3);
+
+        FirestoreMetrics.Stats stats = metrics.getStats().get(0);
+        assertEquals(0, stats.reads);
+        assertEquals(20, stats.cachedDocuments);
+    }
+
+    @Test
+    public void recordTransaction_billsReadsAndWrites() {
+        FirestoreMetrics metrics = new FirestoreMetrics();
+        metrics.recordTransaction("SignUp", "create user", 1, 3, 90);
+
+        FirestoreMetrics.Stats stats = metrics.getStats().get(0);
+        assertEquals(1, stats.calls);
+        assertEquals(1, stats.reads);
+        assertEquals(3, stats.writes);
+        assertEquals(1, stats.latency.getCount());
+    }
+
+    @Test
+    public void recordSnapshot_billsChangedDocuments() {
+        FirestoreMetrics metrics = new FirestoreMetrics();
+        metrics.recordSnapshot("Chat", "messages", 5, true);
+        metrics.recordSnapshot("Chat", "messages", 2, false);
+
+        FirestoreMetrics.Stats stats = metrics.getStats().get(0);
+        assertEquals(2, stats.snapshotEvents);
+        assertEquals(2, stats.reads);
+        assertEquals(5, stats.cachedDocuments);
+        assertEquals(0, stats.latency.getCount());
+    }
+
+    @Test
+    public void recordError_countsCallsOnlyWithLatency() {
+        FirestoreMetrics metrics = new FirestoreMetrics();
+        metrics.recordError("Chat", "send", 120);
+        metrics.recordError("Chat", "send", -1);
+
+        FirestoreMetrics.Stats stats = metrics.getStats().get(0);
+        assertEquals(2, stats.errors);
+        assertEquals(1, stats.calls);
+        assertEquals(1, stats.latency.getCount());
+    }
+
+    @Test
+    public void getStats_keepsQueriesApartInFirstSeenOrder() {
+        FirestoreMetrics metrics = new FirestoreMetrics();
+        metrics.recordWrite("Chat", "send", 3, 80);
+        metrics.recordRead("Chat", "page", 1, false, 20);
+        metrics.recordWrite("Main", "send", 1, 10);
+
+        List<FirestoreMetrics.Stats> stats = metrics.getStats();
+        assertEquals(3, stats.size());
+        assertEquals("send", stats.get(0).query);
+        assertEquals(3, stats.get(0).writes);
+        assertEquals("page", stats.get(1).query);
+        assertEquals("Main", stats.get(2).screen);
+        assertEquals(1, stats.get(2).writes);
+    }
+
+    @Test
+    public void getStats_returnsCopies() {
+        FirestoreMetrics metrics = new FirestoreMetrics();
+        metrics.recordWrite("Chat", "send", 1, 10);
+        FirestoreMetrics.Stats copy = metrics.getStats().get(0);
+        metrics.recordWrite("Chat", "send", 1, 10);
+
+        assertEquals(1, copy.writes);
+        assertEquals(1, copy.latency.getCount());
+    }
+
+    @Test
+    public void getScreenTotals_sumsOneScreen() {
+        FirestoreMetrics metrics = new FirestoreMetrics();
+        metrics.recordRead("Chat", "page", 10, false, 20);
+        metrics.recordWrite("Chat", "send", 4, 30);
+        metrics.recordSnapshot("Chat", "messages", 1, false);
+        metrics.recordRead("Main", "session", 1, false, 20);
+
+        FirestoreMetrics.Stats totals = metrics.getScreenTotals("Chat");
+        assertEquals(11, totals.reads);
+        assertEquals(4, totals.writes);
+        assertEquals(1, totals.snapshotEvents);
+        assertEquals(2, totals.calls);
+    }
+
+    @Test
+    public void reset_forgetsEverything() {
+        FirestoreMetrics metrics = new FirestoreMetrics();
+        metrics.recordWrite("Chat", "send", 1, 10);
+        metrics.reset();
+
+        assertTrue(metrics.getStats().isEmpty());
+        assertEquals("", metrics.dump());
+    }
+
+    @Test
+    public void dump_listsScreensThenQueries() {
+        FirestoreMetrics metrics = new FirestoreMetrics();
+        metrics.recordRead("Chat", "page", 10, false, 20);
+        metrics.recordWrite("Main", "token", 1, 30);
+
+        String[] lines = metrics.dump().split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].startsWith("Chat: 10 reads, 0 writes"));
+        assertTrue(lines[1].startsWith("  page: 1 calls, 0 errors, 10 reads"));
+        assertTrue(lines[1].contains("p50 20ms"));
+        assertTrue(lines[2].startsWith("Main: 0 reads, 1 writes"));
+        assertTrue(lines[3].startsWith("  token: 1 calls"));
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.chatapp.utilities;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ImageLoader}
+ */
+public class ImageLoaderTest {
+
+    @Test
+    public void calculateInSampleSize_keepsImageAtLeastTargetSize() {
+        assertEquals(1, ImageLoader.calculateInSampleSize(150, 150, 105, 105));
+        assertEquals(4, ImageLoader.calculateInSampleSize(420, 420, 105, 105));
+        assertEquals(16, ImageLoader.calculateInSampleSize(4000, 3000, 105, 105));
+        assertEquals(32, ImageLoader.calculateInSampleSize(8000, 6000, 105, 105));
+    }
+
+    @Test
+    public void calculateInSampleSize_decodesFullSizeWithoutTarget() {
+        assertEquals(1, ImageLoader.calculateInSampleSize(4000, 3000, 0, 0));
+    }
+
+    @Test
+    public void hashImage_isStableAndTellsImagesApart() {
+        String hash = ImageLoader.hashImage("aGVsbG8=");
+
+        assertEquals(32, hash.length());
+        assertEquals(hash, ImageLoader.hashImage("aGVsbG8="));
+        assertNotEquals(hash, ImageLoader.hashImage("aGVsbG9="));
+    }
+
+    @Test
+    public void hashImage_doesNotShareStringHashCodeCollisions() {
+        // "Aa" and "BB" have the same String.hashCode
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertNotEquals(ImageLoader.hashImage("Aa"), ImageLoader.hashImage("BB"));
+    }
+}
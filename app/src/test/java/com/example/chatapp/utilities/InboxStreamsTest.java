@@ -0,0 +1,83 @@
+package com.example.chatapp.utilities;
+
+import com.example.chatapp.models.ChatMessage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link InboxStreams}
+ */
+public class InboxStreamsTest {
+
+    private static ChatMessage message(String id, String senderId) {
+        return new ChatMessage(id, senderId, "me", "hello", null, new Date());
+    }
+
+    @Test
+    public void publish_routesOnlyToConversationSubscribers() {
+        InboxStreams streams = new InboxStreams();
+        List<String> alice = new ArrayList<>();
+        List<String> bob = new ArrayList<>();
+        streams.subscribe("alice_me", Runnable::run, (id, received, removedIds) -> alice.add(received.get(0).id));
+        streams.subscribe("bob_me", Runnable::run, (id, received, removedIds) -> bob.add(received.get(0).id));
+
+        streams.publish("alice_me", Collections.singletonList(message("m1", "alice")), Collections.emptyList());
+        streams.publish("bob_me", Collections.singletonList(message("m2", "bob")), Collections.emptyList());
+        streams.publish("carol_me", Collections.singletonList(message("m3", "carol")), Collections.emptyList());
+
+        assertEquals(Collections.singletonList("m1"), alice);
+        assertEquals(Collections.singletonList("m2"), bob);
+    }
+
+    @Test
+    public void publish_reachesSubscribersOfEveryConversation() {
+        InboxStreams streams = new InboxStreams();
+        List<String> conversationIds = new ArrayList<>();
+        streams.subscribe(null, Runnable::run, (id, received, removedIds) -> conversationIds.add(id));
+
+        streams.publish("alice_me", Collections.singletonList(message("m1", "alice")), Collections.emptyList());
+        streams.publish("bob_me", Collections.emptyList(), Collections.singletonList("m2"));
+        streams.publish("carol_me", Collections.emptyList(), Collections.emptyList());
+
+        assertEquals(Arrays.asList("alice_me", "bob_me"), conversationIds);
+    }
+
+    @Test
+    public void publish_deliversOnSubscriberExecutor() {
+        InboxStreams streams = new InboxStreams();
+        List<Runnable> queued = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        streams.subscribe("alice_me", queued::add, (id, received, removedIds) -> removed.addAll(removedIds));
+
+        streams.publish("alice_me", Collections.emptyList(), Collections.singletonList("m1"));
+        assertTrue(removed.isEmpty());
+
+        queued.get(0).run();
+        assertEquals(Collections.singletonList("m1"), removed);
+    }
+
+    @Test
+    public void unsubscribe_stopsDelivery() {
+        InboxStreams streams = new InboxStreams();
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+        InboxStreams.Listener firstListener = (id, received, removedIds) -> first.add(received.get(0).id);
+        streams.subscribe("alice_me", Runnable::run, firstListener);
+        streams.subscribe("alice_me", Runnable::run, (id, received, removedIds) -> second.add(received.get(0).id));
+
+        streams.unsubscribe("alice_me", firstListener);
+        streams.publish("alice_me", Collections.singletonList(message("m1", "alice")), Collections.emptyList());
+
+        assertTrue(first.isEmpty());
+        assertEquals(Collections.singletonList("m1"), second);
+        assertEquals(1, streams.size());
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.chatapp.utilities;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LatencyHistogram}
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void empty_reportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMeanMillis());
+        assertEquals(0, histogram.getMaxMillis());
+        assertEquals(0, histogram.getPercentileMillis(50));
+    }
+
+    @Test
+    public void add_tracksCountMeanAndMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.add(10);
+        histogram.add(20);
+        histogram.add(90);
+
+        assertEquals(3, histogram.getCount());
+        assertEquals(40, histogram.getMeanMillis());
+        assertEquals(90, histogram.getMaxMillis());
+    }
+
+    @Test
+    public void getPercentileMillis_returnsBucketUpperBound() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.add(7);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.add(300);
+        }
+
+        assertEquals(10, histogram.getPercentileMillis(50));
+        assertEquals(10, histogram.getPercentileMillis(90));
+        assertEquals(300, histogram.getPercentileMillis(99));
+    }
+
+    @Test
+    public void getPercentileMillis_boundaryValueStaysInItsBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.add(50);
+        histogram.add(50);
+
+        assertEquals(50, histogram.getPercentileMillis(100));
+    }
+
+    @Test
+    public void getPercentileMillis_slowerThanLastBound_returnsMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.add(12000);
+
+        assertEquals(12000, histogram.getPercentileMillis(50));
+    }
+
+    @Test
+    public void copy_isIndependent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.add(30);
+        LatencyHistogram copy = new LatencyHistogram(histogram);
+        histogram.add(4000);
+
+        assertEquals(1, copy.getCount());
+        assertEquals(30, copy.getMaxMillis());
+        assertEquals(2, histogram.getCount());
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.chatapp.utilities;
+
+import com.example.chatapp.models.ChatMessage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link MessageBuckets}
+ */
+public class MessageBucketsTest {
+
+    private static final int CONVERSATION_SIZE = 5_000;
+    private static final long MESSAGE_INTERVAL_MILLIS = 45_000;
+
+    private static List<ChatMessage> conversation() {
+        List<ChatMessage> chatMessages = new ArrayList<>();
+        for (int i = 0; i < CONVERSATION_SIZE; i++) {
+            chatMessages.add(new ChatMessage("m" + i, "a", "b", "message " + i, null, new Date(i * MESSAGE_INTERVAL_MILLIS)));
+        }
+        return chatMessages;
+    }
+
+    @Test
+    public void getBucketId_groupsByUtcHour() {
+        assertEquals("1970010100", MessageBuckets.getBucketId(new Date(0)));
+        assertEquals("1970010100", MessageBuckets.getBucketId(new Date(3_599_999)));
+        assertEquals("1970010101", MessageBuckets.getBucketId(new Date(3_600_000)));
+    }
+
+    @Test
+    public void toChatMessages_unpacksEntries() {
+        ChatMessage chatMessage = new ChatMessage("m1", "a", "b", "hello", null, new Date(1000));
+        List<Object> entries = new ArrayList<>();
+        entries.add(MessageBuckets.toEntry(chatMessage));
+        Map<String, Object> bucket = new HashMap<>();
+        bucket.put(Constants.KEY_MESSAGES, entries);
+
+        List<ChatMessage> unpacked = MessageBuckets.toChatMessages(bucket, date -> "time");
+        assertEquals(1, unpacked.size());
+        assertEquals(chatMessage, unpacked.get(0));
+        assertEquals("time", unpacked.get(0).datetime);
+        assertTrue(MessageBuckets.toChatMessages(null, date -> "").isEmpty());
+    }
+
+    @Test
+    public void buckets_readFewerDocumentsThanOneDocumentPerMessage() {
+        List<ChatMessage> chatMessages = conversation();
+
+        // the one-document-per-message layout, as document data
+        List<Map<String, Object>> messageDocuments = new ArrayList<>();
+        for (ChatMessage chatMessage : chatMessages) {
+            messageDocuments.add(MessageBuckets.toEntry(chatMessage));
+        }
+
+        // the bucketed layout, as document data
+        Map<String, List<Object>> entries = new LinkedHashMap<>();
+        for (ChatMessage chatMessage : chatMessages) {
+            String bucketId = MessageBuckets.getBucketId(chatMessage.dateObject);
+            if (!entries.containsKey(bucketId)) {
+                entries.put(bucketId, new ArrayList<>());
+            }
+            entries.get(bucketId).add(MessageBuckets.toEntry(chatMessage));
+        }
+        List<Map<String, Object>> bucketDocuments = new ArrayList<>();
+        for (List<Object> bucketEntries : entries.values()) {
+            Map<String, Object> bucket = new HashMap<>();
+            bucket.put(Constants.KEY_MESSAGES, bucketEntries);
+            bucketDocuments.add(bucket);
+        }
+
+        List<ChatMessage> fromMessages = new ArrayList<>();
+        for (Map<String, Object> document : messageDocuments) {
+            fromMessages.add(new ChatMessage(
+                    (String) document.get(Constants.KEY_MESSAGE_ID),
+                    (String) document.get(Constants.KEY_SENDER_ID),
+                    (String) document.get(Constants.KEY_RECEIVER_ID),
+                    (String) document.get(Constants.KEY_MESSAGE),
+                    "",
+                    (Date) document.get(Constants.KEY_TIMESTAMP)
+            ));
+        }
+
+        List<ChatMessage> fromBuckets = new ArrayList<>();
+        for (Map<String, Object> document : bucketDocuments) {
+            fromBuckets.addAll(MessageBuckets.toChatMessages(document, date -> ""));
+        }
+
+        assertEquals(fromMessages, fromBuckets);
+        assertEquals(CONVERSATION_SIZE, messageDocuments.size());
+        // a message every 45 seconds fills 63 hourly buckets
+        assertEquals(63, bucketDocuments.size());
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.chatapp.utilities;
+
+import com.example.chatapp.models.ChatMessage;
+
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link MessageBuffer}
+ */
+public class MessageBufferTest {
+
+    private static ChatMessage messageAt(long time) {
+        return new ChatMessage(null, null, null, null, null, new Date(time));
+    }
+
+    @Test
+    public void insert_returnsTimestampSlot() {
+        MessageBuffer buffer = new MessageBuffer();
+
+        assertEquals(0, buffer.insert(messageAt(20)));
+        assertEquals(1, buffer.insert(messageAt(30)));
+        assertEquals(0, buffer.insert(messageAt(10)));
+        assertEquals(2, buffer.insert(messageAt(25)));
+        assertEquals(4, buffer.size());
+    }
+
+    @Test
+    public void insert_keepsArrivalOrderForEqualTimestamps() {
+        MessageBuffer buffer = new MessageBuffer();
+        ChatMessage first = messageAt(10);
+        ChatMessage second = messageAt(10);
+
+        buffer.insert(first);
+        assertEquals(1, buffer.insert(second));
+        assertSame(first, buffer.getMessages().get(0));
+        assertSame(second, buffer.getMessages().get(1));
+    }
+
+    @Test
+    public void insert_outOfOrderStaysSortedWithLogarithmicComparisons() {
+        final int count = 50_000;
+        final long[] comparisons = {0};
+        Comparator<ChatMessage> counting = (obj1, obj2) -> {
+            comparisons[0]++;
+            return obj1.dateObject.compareTo(obj2.dateObject);
+        };
+
+        MessageBuffer buffer = new MessageBuffer(counting);
+        Random random = new Random(460);
+        for (int i = 0; i < count; i++) {
+            buffer.insert(messageAt(random.nextInt(count * 10)));
+        }
+
+        List<ChatMessage> messages = buffer.getMessages();
+        assertEquals(count, messages.size());
+        for (int i = 1; i < messages.size(); i++) {
+            assertTrue(messages.get(i - 1).dateObject.compareTo(messages.get(i).dateObject) <= 0);
+        }
+
+        double perInsert = (double) comparisons[0] / count;
+        double log2 = Math.log(count) / Math.log(2);
+        assertTrue("comparisons per insert: " + perInsert, perInsert <= log2 + 1);
+    }
+
+    @Test
+    public void trim_dropsMessagesFromTheRequestedEnd() {
+        MessageBuffer buffer = new MessageBuffer();
+        for (int i = 0; i < 10; i++) {
+            buffer.insert(messageAt(i));
+        }
+
+        assertEquals(3, buffer.trimNewest(7));
+        assertEquals(6, buffer.last().dateObject.getTime());
+        assertEquals(2, buffer.trimOldest(5));
+        assertEquals(2, buffer.first().dateObject.getTime());
+        assertEquals(0, buffer.trimOldest(5));
+    }
+
+    @Test
+    public void insert_replacesMessageWithSameId() {
+        MessageBuffer buffer = new MessageBuffer();
+        buffer.insert(new ChatMessage("a", null, null, "first", null, new Date(10)));
+        buffer.insert(new ChatMessage("b", null, null, "other", null, new Date(20)));
+
+        assertEquals(1, buffer.insert(new ChatMessage("a", null, null, "edited", null, new Date(30))));
+        assertEquals(2, buffer.size());
+        assertEquals("edited", buffer.last().message);
+    }
+
+    @Test
+    public void remove_findsMessageAmongEqualTimestamps() {
+        MessageBuffer buffer = new MessageBuffer();
+        for (int i = 0; i < 5; i++) {
+            buffer.insert(new ChatMessage("m" + i, null, null, null, null, new Date(10)));
+        }
+
+        assertEquals(3, buffer.remove("m3"));
+        assertEquals(-1, buffer.remove("m3"));
+        assertFalse(buffer.contains("m3"));
+        assertEquals(4, buffer.size());
+    }
+}
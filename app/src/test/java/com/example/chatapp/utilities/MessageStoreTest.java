@@ -0,0 +1,121 @@
+package com.example.chatapp.utilities;
+
+import android.database.Cursor;
+
+import com.example.chatapp.models.ChatMessage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Robolectric tests for {@link MessageStore}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MessageStoreTest {
+
+    private static final int CONVERSATION_SIZE = 10_000;
+
+    private MessageStore messageStore;
+
+    @Before
+    public void setUp() {
+        messageStore = new MessageStore(RuntimeEnvironment.getApplication(), null);
+    }
+
+    @After
+    public void tearDown() {
+        messageStore.close();
+    }
+
+    private static List<ChatMessage> conversation(String prefix, int size) {
+        List<ChatMessage> chatMessages = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            chatMessages.add(new ChatMessage(prefix + i, "a", "b", "message " + i, null, new Date(i * 1000L)));
+        }
+        return chatMessages;
+    }
+
+    @Test
+    public void getLatestMessages_returnsNewestPageOldestFirst() {
+        messageStore.putMessages("a_b", conversation("m", 100));
+        messageStore.putMessages("a_c", conversation("other", 100));
+
+        List<ChatMessage> page = messageStore.getLatestMessages("a_b", 10, date -> "");
+        assertEquals(10, page.size());
+        assertEquals("m90", page.get(0).id);
+        assertEquals("m99", page.get(9).id);
+    }
+
+    @Test
+    public void putMessages_replacesById() {
+        messageStore.putMessages("a_b", conversation("m", 3));
+        messageStore.putMessages("a_b", Collections.singletonList(
+                new ChatMessage("m1", "a", "b", "edited", null, new Date(1000L))));
+        messageStore.removeMessage("m2");
+
+        List<ChatMessage> page = messageStore.getLatestMessages("a_b", 10, date -> "");
+        assertEquals(2, page.size());
+        assertEquals("edited", page.get(1).message);
+    }
+
+    @Test
+    public void getSyncedAt_neverSynced_isNull() {
+        messageStore.putMessages("a_b", conversation("m", 3));
+
+        assertNull(messageStore.getSyncedAt("a_b"));
+    }
+
+    @Test
+    public void setSyncedAt_onlyMovesForward() {
+        messageStore.setSyncedAt("a_b", new Date(5000L));
+        messageStore.setSyncedAt("a_b", new Date(2000L));
+        messageStore.setSyncedAt("a_c", new Date(1000L));
+
+        assertEquals(new Date(5000L), messageStore.getSyncedAt("a_b"));
+        assertEquals(new Date(1000L), messageStore.getSyncedAt("a_c"));
+
+        messageStore.setSyncedAt("a_b", new Date(9000L));
+        assertEquals(new Date(9000L), messageStore.getSyncedAt("a_b"));
+    }
+
+    @Test
+    public void putMessages_doesNotMoveSyncedAt() {
+        messageStore.setSyncedAt("a_b", new Date(1000L));
+        messageStore.putMessages("a_b", conversation("m", 10));
+
+        assertEquals(new Date(1000L), messageStore.getSyncedAt("a_b"));
+    }
+
+    @Test
+    public void getLatestMessages_firstRowFromLargeConversationUsesIndex() {
+        messageStore.putMessages("a_b", conversation("m", CONVERSATION_SIZE));
+        messageStore.putMessages("a_c", conversation("other", CONVERSATION_SIZE));
+
+        try (Cursor plan = messageStore.getReadableDatabase().rawQuery(
+                "EXPLAIN QUERY PLAN SELECT * FROM " + MessageStore.TABLE_MESSAGES
+                        + " WHERE conversationId = ? ORDER BY timestamp DESC LIMIT 50",
+                new String[]{"a_b"})) {
+            StringBuilder detail = new StringBuilder();
+            while (plan.moveToNext()) {
+                detail.append(plan.getString(plan.getColumnCount() - 1)).append('\n');
+            }
+            assertTrue(detail.toString(), detail.toString().contains("index_messages_conversation_timestamp"));
+            assertFalse(detail.toString(), detail.toString().contains("TEMP B-TREE"));
+        }
+
+        List<ChatMessage> page = messageStore.getLatestMessages("a_b", Constants.MESSAGE_PAGE_SIZE, date -> "");
+        assertEquals(Constants.MESSAGE_PAGE_SIZE, page.size());
+        assertEquals("m" + (CONVERSATION_SIZE - 1), page.get(page.size() - 1).id);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.chatapp.utilities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link NotificationCoalescer}, feeding in bursts and counting notify calls
+ */
+public class NotificationCoalescerTest {
+
+    private ScheduledExecutorService scheduler;
+    private final List<String> postedKeys = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, Integer> postedCounts = Collections.synchronizedMap(new HashMap<>());
+    private final Map<String, List<Integer>> postedItems = Collections.synchronizedMap(new HashMap<>());
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    private NotificationCoalescer<Integer> coalescer(long windowMillis, long minIntervalMillis, int maxItems) {
+        return new NotificationCoalescer<>(scheduler, windowMillis, minIntervalMillis, maxItems, (key, items, count) -> {
+            postedKeys.add(key);
+            postedCounts.put(key, count);
+            postedItems.put(key, items);
+        });
+    }
+
+    @Test
+    public void add_burstFromOneConversation_notifiesOnce() throws Exception {
+        NotificationCoalescer<Integer> coalescer = coalescer(50, 0, 7);
+        for (int i = 0; i < 30; i++) {
+            coalescer.add("a_b", i);
+        }
+        Thread.sleep(300);
+
+        assertEquals(1, postedKeys.size());
+        assertEquals(30, (int) postedCounts.get("a_b"));
+        // only the newest messages are kept for the notification
+        assertEquals(7, postedItems.get("a_b").size());
+        assertEquals(23, (int) postedItems.get("a_b").get(0));
+        assertEquals(29, (int) postedItems.get("a_b").get(6));
+    }
+
+    @Test
+    public void add_interleavedBursts_notifyOncePerConversation() throws Exception {
+        NotificationCoalescer<Integer> coalescer = coalescer(50, 0, 7);
+        for (int i = 0; i < 30; i++) {
+            coalescer.add("conversation" + i % 3, i);
+        }
+        Thread.sleep(300);
+
+        assertEquals(3, postedKeys.size());
+        assertEquals(10, (int) postedCounts.get("conversation0"));
+        assertEquals(10, (int) postedCounts.get("conversation1"));
+        assertEquals(10, (int) postedCounts.get("conversation2"));
+    }
+
+    @Test
+    public void add_steadyStream_isRateLimited() throws Exception {
+        NotificationCoalescer<Integer> coalescer = coalescer(20, 500, 7);
+        // a message every 10ms for a second, which would be 100 notify calls
+        for (int i = 0; i < 100; i++) {
+            coalescer.add("a_b", i);
+            Thread.sleep(10);
+        }
+        Thread.sleep(700);
+
+        // the first post after the window, then one every 500ms at most
+        assertTrue("posted " + postedKeys.size() + " times", postedKeys.size() >= 2);
+        assertTrue("posted " + postedKeys.size() + " times", postedKeys.size() <= 4);
+        assertEquals(100, (int) postedCounts.get("a_b"));
+    }
+
+    @Test
+    public void add_afterQuietPeriod_waitsOnlyForWindow() throws Exception {
+        NotificationCoalescer<Integer> coalescer = coalescer(20, 100, 7);
+        coalescer.add("a_b", 1);
+        Thread.sleep(250);
+        coalescer.add("a_b", 2);
+        Thread.sleep(100);
+
+        assertEquals(2, postedKeys.size());
+        assertEquals(2, (int) postedCounts.get("a_b"));
+    }
+
+    @Test
+    public void clear_dropsPendingMessages() throws Exception {
+        NotificationCoalescer<Integer> coalescer = coalescer(50, 0, 7);
+        coalescer.add("a_b", 1);
+        coalescer.add("c_d", 2);
+        coalescer.clear("a_b");
+        Thread.sleep(200);
+
+        assertEquals(Collections.singletonList("c_d"), postedKeys);
+
+        coalescer.add("a_b", 3);
+        Thread.sleep(200);
+
+        // counting starts again after the conversation was seen
+        assertEquals(1, (int) postedCounts.get("a_b"));
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.chatapp.utilities;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.media.ExifInterface;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+/**
+ * Robolectric tests for {@link ProfileImageEncoder}, decoding with the native graphics stack
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class ProfileImageEncoderTest {
+
+    // a 48 MP photo, which takes 192 MB as a full size ARGB bitmap
+    private static final int PHOTO_WIDTH = 8000;
+    private static final int PHOTO_HEIGHT = 6000;
+
+    private static byte[] photo;
+
+    private final ProfileImageEncoder encoder = new ProfileImageEncoder(150, 75, 16 * 1024);
+
+    @BeforeClass
+    public static void createPhoto() throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        // one bit per pixel keeps the synthetic photo small in the test's own heap
+        BufferedImage image = new BufferedImage(PHOTO_WIDTH, PHOTO_HEIGHT, BufferedImage.TYPE_BYTE_BINARY);
+        for (int y = 0; y < PHOTO_HEIGHT; y += 100) {
+            for (int x = 0; x < PHOTO_WIDTH; x++) {
+                image.setRGB(x, y, 0xffffff);
+            }
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outputStream);
+        photo = outputStream.toByteArray();
+    }
+
+    private static Bitmap noise(int width, int height) {
+        Random random = new Random(42);
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                bitmap.setPixel(x, y, Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            }
+        }
+        return bitmap;
+    }
+
+    @Test
+    public void decodeSampled_largePhoto_peakBitmapStaysUnderOneMegabyte() throws IOException {
+        Bitmap sampled = encoder.decodeSampled(() -> new ByteArrayInputStream(photo));
+
+        assertNotNull(sampled);
+        // 8000 x 6000 sampled by 32 is 250 x 187, under 200 KB instead of 192 MB
+        assertEquals(250, sampled.getWidth());
+        assertTrue(sampled.getAllocationByteCount() < 1024 * 1024);
+    }
+
+    @Test
+    public void decode_largePhoto_scalesToTargetWidth() throws IOException {
+        Bitmap bitmap = encoder.decode(() -> new ByteArrayInputStream(photo));
+
+        assertNotNull(bitmap);
+        assertEquals(150, bitmap.getWidth());
+        assertEquals(112, bitmap.getHeight(), 1);
+    }
+
+    @Test
+    public void decode_notAnImage_returnsNull() throws IOException {
+        byte[] text = "not an image".getBytes();
+
+        assertNull(encoder.decode(() -> new ByteArrayInputStream(text)));
+    }
+
+    @Test
+    public void compress_smallerBudget_lowersQuality() {
+        Bitmap bitmap = noise(150, 150);
+
+        byte[] generous = new ProfileImageEncoder(150, 75, 1024 * 1024).compress(bitmap);
+        byte[] tight = new ProfileImageEncoder(150, 75, 1).compress(bitmap);
+
+        assertTrue(tight.length < generous.length);
+    }
+
+    @Test
+    public void compress_withinBudget_keepsFirstQuality() {
+        Bitmap bitmap = noise(150, 150);
+
+        byte[] generous = new ProfileImageEncoder(150, 75, 1024 * 1024).compress(bitmap);
+        byte[] exact = new ProfileImageEncoder(150, 75, generous.length).compress(bitmap);
+
+        assertArrayEquals(generous, exact);
+    }
+
+    @Test
+    public void getRotation_mapsExifOrientations() {
+        assertEquals(0, ProfileImageEncoder.getRotation(ExifInterface.ORIENTATION_NORMAL));
+        assertEquals(90, ProfileImageEncoder.getRotation(ExifInterface.ORIENTATION_ROTATE_90));
+        assertEquals(180, ProfileImageEncoder.getRotation(ExifInterface.ORIENTATION_ROTATE_180));
+        assertEquals(270, ProfileImageEncoder.getRotation(ExifInterface.ORIENTATION_ROTATE_270));
+        assertEquals(0, ProfileImageEncoder.getRotation(ExifInterface.ORIENTATION_UNDEFINED));
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.chatapp.utilities;
+
+import com.example.chatapp.models.ChatMessage;
+import com.google.firebase.messaging.RemoteMessage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Robolectric tests for {@link PushMessages}, fed with fake remote messages
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PushMessagesTest {
+
+    private MessageStore messageStore;
+
+    @Before
+    public void setUp() {
+        messageStore = new MessageStore(RuntimeEnvironment.getApplication(), null);
+    }
+
+    @After
+    public void tearDown() {
+        messageStore.close();
+    }
+
+    private static RemoteMessage.Builder chatPush(String id, String senderId, String receiverId) {
+        return new RemoteMessage.Builder("sender@fcm.googleapis.com")
+                .addData(Constants.KEY_MESSAGE_ID, id)
+                .addData(Constants.KEY_SENDER_ID, senderId)
+                .addData(Constants.KEY_RECEIVER_ID, receiverId)
+                .addData(Constants.KEY_MESSAGE, "hello " + id)
+                .addData(Constants.KEY_TIMESTAMP, "1700000000000");
+    }
+
+    @Test
+    public void cacheMessage_dataOnlyPush_isReadFromConversation() {
+        RemoteMessage message = chatPush("m1", "alice", "bob").build();
+
+        assertNull(message.getNotification());
+        assertTrue(PushMessages.cacheMessage(message.getData(), "bob", messageStore));
+
+        List<ChatMessage> stored = messageStore.getLatestMessages(
+                ConversationHelper.getConversationId("bob", "alice"), 10, date -> "");
+        assertEquals(1, stored.size());
+        assertEquals("m1", stored.get(0).id);
+        assertEquals("alice", stored.get(0).senderId);
+        assertEquals("hello m1", stored.get(0).message);
+        assertEquals(new Date(1700000000000L), stored.get(0).dateObject);
+    }
+
+    @Test
+    public void cacheMessage_samePushTwice_storesOnce() {
+        RemoteMessage message = chatPush("m1", "alice", "bob").build();
+        PushMessages.cacheMessage(message.getData(), "bob", messageStore);
+        PushMessages.cacheMessage(message.getData(), "bob", messageStore);
+
+        assertEquals(1, messageStore.getLatestMessages(
+                ConversationHelper.getConversationId("alice", "bob"), 10, date -> "").size());
+    }
+
+    @Test
+    public void cacheMessage_leavesSyncPointAlone() {
+        String conversationId = ConversationHelper.getConversationId("alice", "bob");
+        PushMessages.cacheMessage(chatPush("m1", "alice", "bob").build().getData(), "bob", messageStore);
+        assertNull(messageStore.getSyncedAt(conversationId));
+
+        messageStore.setSyncedAt(conversationId, new Date(1000L));
+        PushMessages.cacheMessage(chatPush("m2", "alice", "bob").build().getData(), "bob", messageStore);
+        assertEquals(new Date(1000L), messageStore.getSyncedAt(conversationId));
+    }
+
+    @Test
+    public void cacheMessage_otherReceiver_isIgnored() {
+        RemoteMessage message = chatPush("m1", "alice", "carol").build();
+
+        assertFalse(PushMessages.cacheMessage(message.getData(), "bob", messageStore));
+        assertFalse(PushMessages.cacheMessage(message.getData(), null, messageStore));
+        assertTrue(messageStore.getLatestMessages(
+                ConversationHelper.getConversationId("alice", "carol"), 10, date -> "").isEmpty());
+    }
+
+    @Test
+    public void toChatMessage_incompletePayload_isNull() {
+        RemoteMessage noTimestamp = new RemoteMessage.Builder("sender@fcm.googleapis.com")
+                .addData(Constants.KEY_MESSAGE_ID, "m1")
+                .addData(Constants.KEY_SENDER_ID, "alice")
+                .addData(Constants.KEY_RECEIVER_ID, "bob")
+                .addData(Constants.KEY_MESSAGE, "hello")
+                .build();
+        RemoteMessage badTimestamp = chatPush("m1", "alice", "bob")
+                .addData(Constants.KEY_TIMESTAMP, "yesterday")
+                .build();
+
+        assertNull(PushMessages.toChatMessage(noTimestamp.getData()));
+        assertNull(PushMessages.toChatMessage(badTimestamp.getData()));
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.chatapp.utilities;
+
+import com.example.chatapp.models.ChatMessage;
+import com.example.chatapp.models.RecentConversation;
+import com.example.chatapp.models.User;
+import com.google.firebase.Timestamp;
+
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link RecentConversations}
+ */
+public class RecentConversationsTest {
+
+    private static User user(String id, String firstName, String imageHash) {
+        User user = new User();
+        user.id = id;
+        user.firstName = firstName;
+        user.lastName = "Last";
+        user.email = id + "@example.com";
+        user.imageHash = imageHash;
+        return user;
+    }
+
+    @Test
+    public void toEntry_roundTripsThroughIndex() {
+        User ada = user("ada", "Ada", "a1");
+        Date date = new Date(1700000000000L);
+        ChatMessage lastMessage = new ChatMessage("m1", "grace", "ada", "hi Ada", null, date);
+
+        Map<String, Object> entry = RecentConversations.toEntry(ada, lastMessage);
+        // as read back from Firestore, after the unread count was incremented
+        entry.put(Constants.KEY_TIMESTAMP, new Timestamp(date));
+        entry.put(Constants.KEY_UNREAD_COUNT, 3L);
+
+        RecentConversation conversation = RecentConversations.toRecentConversation("ada", entry);
+        assertEquals("ada", conversation.user.id);
+        assertEquals("Ada", conversation.user.firstName);
+        assertEquals("a1", conversation.user.imageHash);
+        // the index doesn't copy details the list doesn't show
+        assertNull(conversation.user.email);
+        assertEquals("hi Ada", conversation.lastMessage);
+        assertEquals("grace", conversation.lastSenderId);
+        assertEquals(date, conversation.dateObject);
+        assertEquals(3, conversation.unreadCount);
+    }
+
+    @Test
+    public void toRecentConversation_missingUnreadCount_isZero() {
+        ChatMessage lastMessage = new ChatMessage("m1", "ada", "grace", "hello", null, new Date());
+        Map<String, Object> entry = RecentConversations.toEntry(user("grace", "Grace", null), lastMessage);
+
+        assertEquals(0, RecentConversations.toRecentConversation("grace", entry).unreadCount);
+    }
+
+    @Test
+    public void toRecentConversation_sameEntry_isEqual() {
+        ChatMessage lastMessage = new ChatMessage("m1", "ada", "grace", "hello", null, new Date());
+        Map<String, Object> entry = RecentConversations.toEntry(user("grace", "Grace", "g1"), lastMessage);
+
+        assertEquals(RecentConversations.toRecentConversation("grace", entry),
+                RecentConversations.toRecentConversation("grace", entry));
+    }
+}
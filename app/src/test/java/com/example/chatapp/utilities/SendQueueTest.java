@@ -0,0 +1,79 @@
+package com.example.chatapp.utilities;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SendQueue}
+ */
+public class SendQueueTest {
+
+    @Test
+    public void enqueue_coalescesBurstIntoOneBatch() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        List<List<Integer>> batches = new ArrayList<>();
+        CountDownLatch written = new CountDownLatch(1);
+
+        SendQueue<Integer> queue = new SendQueue<>(scheduler, 50, 500, items -> {
+            batches.add(items);
+            written.countDown();
+        });
+        for (int i = 0; i < 30; i++) {
+            queue.enqueue(i);
+        }
+
+        assertTrue(written.await(1, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(1, TimeUnit.SECONDS));
+
+        assertEquals(1, batches.size());
+        assertEquals(30, batches.get(0).size());
+        assertEquals(0, (int) batches.get(0).get(0));
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void flush_splitsIntoMaxBatchSize() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        List<List<Integer>> batches = new ArrayList<>();
+
+        SendQueue<Integer> queue = new SendQueue<>(scheduler, 60_000, 4, batches::add);
+        for (int i = 0; i < 10; i++) {
+            queue.enqueue(i);
+        }
+        queue.flush();
+        scheduler.shutdownNow();
+
+        assertEquals(3, batches.size());
+        assertEquals(4, batches.get(0).size());
+        assertEquals(2, batches.get(2).size());
+    }
+
+    @Test
+    public void enqueue_writesWithinTheWindow() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        long[] writtenAt = new long[1];
+        CountDownLatch written = new CountDownLatch(1);
+
+        SendQueue<Integer> queue = new SendQueue<>(scheduler, 20, 500, items -> {
+            writtenAt[0] = System.nanoTime();
+            written.countDown();
+        });
+        long queuedAt = System.nanoTime();
+        queue.enqueue(1);
+
+        assertTrue(written.await(1, TimeUnit.SECONDS));
+        scheduler.shutdown();
+
+        long delayMillis = TimeUnit.NANOSECONDS.toMillis(writtenAt[0] - queuedAt);
+        assertTrue("write delay: " + delayMillis + "ms", delayMillis >= 20 && delayMillis < 500);
+    }
+}
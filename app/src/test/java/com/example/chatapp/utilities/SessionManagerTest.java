@@ -0,0 +1,91 @@
+package com.example.chatapp.utilities;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.example.chatapp.models.Session;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.*;
+
+/**
+ * Robolectric tests for {@link SessionManager}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SessionManagerTest {
+
+    private SharedPreferences sharedPreferences;
+
+    @Before
+    public void setUp() {
+        sharedPreferences = RuntimeEnvironment.getApplication()
+                .getSharedPreferences(Constants.KEY_PREFERENCE_NAME, Context.MODE_PRIVATE);
+        sharedPreferences.edit().clear().commit();
+    }
+
+    @Test
+    public void update_persistsWholeSession() {
+        new SessionManager(sharedPreferences).update(session -> {
+            session.isSignedIn = true;
+            session.userId = "u1";
+            session.firstName = "Ada";
+            session.lastName = "Lovelace";
+            session.imageHash = "abc";
+            session.token = "token";
+        });
+
+        Session session = new SessionManager(sharedPreferences).getSession();
+        assertTrue(session.isSignedIn);
+        assertEquals("u1", session.userId);
+        assertEquals("Ada", session.firstName);
+        assertEquals("Lovelace", session.lastName);
+        assertEquals("abc", session.imageHash);
+        assertEquals("token", session.token);
+        assertFalse(session.isChatMigrated);
+    }
+
+    @Test
+    public void getSession_readsLegacyKeysAndDropsImage() {
+        sharedPreferences.edit()
+                .putBoolean(Constants.KEY_IS_SIGNED_IN, true)
+                .putString(Constants.KEY_USER_ID, "u1")
+                .putString(Constants.KEY_FIRST_NAME, "Ada")
+                .putString(Constants.KEY_IMAGE, "base64 image")
+                .putBoolean(Constants.KEY_IS_IMAGE_MIGRATED, true)
+                .commit();
+
+        Session session = new SessionManager(sharedPreferences).getSession();
+
+        assertTrue(session.isSignedIn);
+        assertEquals("u1", session.userId);
+        assertEquals("Ada", session.firstName);
+        assertTrue(session.isImageMigrated);
+        assertFalse(sharedPreferences.contains(Constants.KEY_IMAGE));
+    }
+
+    @Test
+    public void getSession_returnsCopy() {
+        SessionManager sessionManager = new SessionManager(sharedPreferences);
+        sessionManager.getSession().userId = "changed";
+
+        assertNull(sessionManager.getSession().userId);
+    }
+
+    @Test
+    public void clear_signsOut() {
+        SessionManager sessionManager = new SessionManager(sharedPreferences);
+        sessionManager.update(session -> {
+            session.isSignedIn = true;
+            session.userId = "u1";
+        });
+        sessionManager.clear();
+
+        assertFalse(sessionManager.getSession().isSignedIn);
+        assertNull(new SessionManager(sharedPreferences).getSession().userId);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.chatapp.utilities;
+
+import com.google.firebase.firestore.ListenerRegistration;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SubscriptionManager}
+ */
+public class SubscriptionManagerTest {
+
+    /**
+     * A subscriber which counts its attached listeners and remembers what each resumed from
+     */
+    private static class FakeSubscriber implements SubscriptionManager.Subscriber {
+        int attached = 0;
+        int lastSeen = 0;
+        final List<Integer> resumedFrom = new ArrayList<>();
+
+        @Override
+        public ListenerRegistration subscribe() {
+            attached++;
+            resumedFrom.add(lastSeen);
+            return () -> attached--;
+        }
+    }
+
+    @Test
+    public void add_beforeStart_attachesOnStart() {
+        SubscriptionManager subscriptions = new SubscriptionManager();
+        FakeSubscriber subscriber = new FakeSubscriber();
+        subscriptions.add(subscriber);
+        assertEquals(0, subscriber.attached);
+
+        subscriptions.start();
+        assertEquals(1, subscriber.attached);
+    }
+
+    @Test
+    public void add_whileStarted_attachesRightAway() {
+        SubscriptionManager subscriptions = new SubscriptionManager();
+        subscriptions.start();
+        FakeSubscriber subscriber = new FakeSubscriber();
+        subscriptions.add(subscriber);
+
+        assertEquals(1, subscriber.attached);
+    }
+
+    @Test
+    public void stopAndStart_detachesThenResumesFromLastSeen() {
+        SubscriptionManager subscriptions = new SubscriptionManager();
+        FakeSubscriber subscriber = new FakeSubscriber();
+        subscriptions.add(subscriber);
+        subscriptions.start();
+        subscriber.lastSeen = 5;
+
+        subscriptions.stop();
+        assertEquals(0, subscriber.attached);
+
+        subscriber.lastSeen = 7;
+        subscriptions.start();
+        subscriptions.start();
+        assertEquals(1, subscriber.attached);
+        assertEquals(7, (int) subscriber.resumedFrom.get(1));
+    }
+
+    @Test
+    public void close_detachesAndIgnoresLaterSubscribers() {
+        SubscriptionManager subscriptions = new SubscriptionManager();
+        FakeSubscriber first = new FakeSubscriber();
+        subscriptions.add(first);
+        subscriptions.start();
+
+        subscriptions.close();
+        FakeSubscriber late = new FakeSubscriber();
+        subscriptions.add(late);
+        subscriptions.start();
+
+        assertEquals(0, first.attached);
+        assertEquals(0, late.attached);
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.chatapp.utilities;
+
+import com.example.chatapp.models.User;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link UserSearchIndex}
+ */
+public class UserSearchIndexTest {
+
+    private static final int DIRECTORY_SIZE = 100_000;
+    private static final String[] FIRST_NAMES = {"Ada", "Alan", "Grace", "Linus", "Margaret", "Dennis", "Barbara", "Ken"};
+    private static final String[] LAST_NAMES = {"Lovelace", "Turing", "Hopper", "Torvalds", "Hamilton", "Ritchie", "Liskov", "Thompson"};
+
+    private static User user(String id, String firstName, String lastName, String email) {
+        User user = new User();
+        user.id = id;
+        user.firstName = firstName;
+        user.lastName = lastName;
+        user.email = email;
+        return user;
+    }
+
+    private static List<User> directory(int size) {
+        Random random = new Random(7);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            String firstName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            String lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            users.add(user("u" + i, firstName, lastName,
+                    firstName.toLowerCase(Locale.ROOT) + i + "@example.com"));
+        }
+        return users;
+    }
+
+    private static List<User> scan(List<User> users, String query) {
+        List<User> results = new ArrayList<>();
+        String word = query.toLowerCase(Locale.ROOT);
+        for (User user : users) {
+            if (user.firstName.toLowerCase(Locale.ROOT).contains(word)
+                    || user.lastName.toLowerCase(Locale.ROOT).contains(word)
+                    || user.email.contains(word)) {
+                results.add(user);
+            }
+        }
+        return results;
+    }
+
+    @Test
+    public void search_shortWord_matchesStartOfField() {
+        UserSearchIndex index = new UserSearchIndex();
+        User ada = user("1", "Ada", "Lovelace", "ada@example.com");
+        User alan = user("2", "Alan", "Turing", "alan@example.com");
+        User grace = user("3", "Grace", "Hopper", "grace@example.com");
+        index.addAll(Arrays.asList(ada, alan, grace));
+
+        assertEquals(Arrays.asList(ada, alan), index.search("a"));
+        assertEquals(Arrays.asList(alan), index.search("Tu"));
+        assertTrue(index.search("ce").isEmpty());
+    }
+
+    @Test
+    public void search_longWord_matchesAnywhereInField() {
+        UserSearchIndex index = new UserSearchIndex();
+        User ada = user("1", "Ada", "Lovelace", "ada@example.com");
+        User grace = user("2", "Grace", "Hopper", "grace@example.com");
+        index.addAll(Arrays.asList(ada, grace));
+
+        assertEquals(Arrays.asList(ada), index.search("LACE"));
+        assertEquals(Arrays.asList(ada, grace), index.search("example"));
+        assertTrue(index.search("xyz").isEmpty());
+    }
+
+    @Test
+    public void search_severalWords_mustAllMatch() {
+        UserSearchIndex index = new UserSearchIndex();
+        User adaLovelace = user("1", "Ada", "Lovelace", "ada@example.com");
+        User adaTuring = user("2", "Ada", "Turing", "turing@example.com");
+        index.addAll(Arrays.asList(adaLovelace, adaTuring));
+
+        assertEquals(Arrays.asList(adaTuring), index.search("ada tur"));
+        assertEquals(Arrays.asList(adaLovelace, adaTuring), index.search("  ada  "));
+    }
+
+    @Test
+    public void search_gramsWithoutWord_isNotAMatch() {
+        UserSearchIndex index = new UserSearchIndex();
+        // has the grams "abc" and "bcd" but not "abcd"
+        index.add(user("1", "abcx", "xbcd", "x@example.com"));
+
+        assertTrue(index.search("abcd").isEmpty());
+    }
+
+    @Test
+    public void search_blankQuery_returnsEveryone() {
+        UserSearchIndex index = new UserSearchIndex();
+        List<User> users = directory(10);
+        index.addAll(users);
+
+        assertEquals(users, index.search(""));
+        assertEquals(users, index.search("   "));
+    }
+
+    @Test
+    public void add_sameIdTwice_indexesOnce() {
+        UserSearchIndex index = new UserSearchIndex();
+        index.add(user("1", "Ada", "Lovelace", "ada@example.com"));
+        index.add(user("1", "Ada", "Lovelace", "ada@example.com"));
+
+        assertEquals(1, index.size());
+        assertEquals(1, index.search("ada").size());
+    }
+
+    @Test
+    public void add_changedUser_replacesOldEntry() {
+        UserSearchIndex index = new UserSearchIndex();
+        User ada = user("1", "Ada", "Lovelace", "ada@example.com");
+        User alan = user("2", "Alan", "Turing", "alan@example.com");
+        User renamed = user("1", "Ada", "King", "ada@example.com");
+        index.addAll(Arrays.asList(ada, alan));
+        index.add(renamed);
+
+        assertEquals(2, index.size());
+        assertTrue(index.search("lovelace").isEmpty());
+        assertEquals(Arrays.asList(renamed), index.search("king"));
+        assertEquals(Arrays.asList(alan, renamed), index.search("a"));
+        assertEquals(Arrays.asList(alan, renamed), index.search(""));
+    }
+
+    @Test
+    public void clear_thenAddAll_usesNewOrder() {
+        UserSearchIndex index = new UserSearchIndex();
+        User ada = user("1", "Ada", "Lovelace", "ada@example.com");
+        User alan = user("2", "Alan", "Turing", "alan@example.com");
+        index.addAll(Arrays.asList(alan, ada));
+        index.clear();
+        index.addAll(Arrays.asList(ada, alan));
+
+        assertEquals(2, index.size());
+        assertEquals(Arrays.asList(ada, alan), index.search(""));
+        assertEquals(Arrays.asList(alan), index.search("turing"));
+    }
+
+    @Test
+    public void add_inPages_matchesIndexingAtOnce() {
+        List<User> users = directory(1_000);
+        UserSearchIndex paged = new UserSearchIndex();
+        for (int start = 0; start < users.size(); start += 50) {
+            paged.addAll(users.subList(start, start + 50));
+        }
+
+        assertEquals(scan(users, "hopper"), paged.search("hopper"));
+        assertEquals(scan(users, "ace12"), paged.search("ace12"));
+    }
+
+    @Test
+    public void search_at100kUsers_matchesLinearScan() {
+        List<User> users = directory(DIRECTORY_SIZE);
+        UserSearchIndex index = new UserSearchIndex();
+        index.addAll(users);
+
+        List<User> graceHoppers = new ArrayList<>();
+        for (User user : scan(users, "grace")) {
+            if (user.lastName.equals("Hopper")) {
+                graceHoppers.add(user);
+            }
+        }
+
+        assertEquals(scan(users, "grace"), index.search("grace"));
+        assertEquals(graceHoppers, index.search("grace hop"));
+        assertEquals(scan(users, "hopper"), index.search("hopper"));
+        assertEquals(scan(users, "99999@"), index.search("99999@"));
+        assertEquals(1, index.search("99999@").size());
+    }
+}
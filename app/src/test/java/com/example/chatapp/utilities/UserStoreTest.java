@@ -0,0 +1,79 @@
+package com.example.chatapp.utilities;
+
+import com.example.chatapp.models.User;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Robolectric tests for {@link UserStore}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class UserStoreTest {
+
+    private UserStore userStore;
+
+    @Before
+    public void setUp() {
+        userStore = new UserStore(RuntimeEnvironment.getApplication(), null);
+    }
+
+    @After
+    public void tearDown() {
+        userStore.close();
+    }
+
+    private static User user(String id, String firstName, String imageHash) {
+        User user = new User();
+        user.id = id;
+        user.firstName = firstName;
+        user.lastName = "Last";
+        user.email = id + "@example.com";
+        user.imageHash = imageHash;
+        user.token = "token" + id;
+        return user;
+    }
+
+    @Test
+    public void getUsers_orderedByFirstNameWithoutExcludedUser() {
+        User grace = user("1", "Grace", "a");
+        User ada = user("2", "Ada", "b");
+        User me = user("3", "Alan", "c");
+        userStore.putUsers(Arrays.asList(grace, ada, me));
+
+        assertEquals(Arrays.asList(ada, grace), userStore.getUsers("3"));
+    }
+
+    @Test
+    public void putUsers_sameId_replacesStoredUser() {
+        userStore.putUsers(Collections.singletonList(user("1", "Grace", "old")));
+        User changed = user("1", "Grace", "new");
+        userStore.putUsers(Collections.singletonList(changed));
+
+        List<User> users = userStore.getUsers("");
+        assertEquals(Collections.singletonList(changed), users);
+    }
+
+    @Test
+    public void getSyncedAt_neverSynced_returnsZero() {
+        assertEquals(0, userStore.getSyncedAt());
+    }
+
+    @Test
+    public void setSyncedAt_keepsLatestTime() {
+        userStore.setSyncedAt(1_000);
+        userStore.setSyncedAt(2_000);
+
+        assertEquals(2_000, userStore.getSyncedAt());
+    }
+}